@@ -0,0 +1,128 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Sustained getContactById throughput with many concurrent clients, through the blocking and the async API.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.AsyncBenchmark [clients] [seconds]
+//   clients - concurrent requests kept in flight, default 1000
+//   seconds - measurement time per run, default 10
+public class AsyncBenchmark {
+    private static final int SEED_ROWS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long measureNanos = (args.length > 1 ? Long.parseLong(args[1]) : 10) * 1_000_000_000L;
+
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try (AsyncContactPersonDAO asyncDao = new AsyncContactPersonDAO(dao, clients)) {
+            dao.createContactTable();
+            int[] ids = seed(dao);
+            int poolSize = dao.getPool().getMaxSize();
+            System.out.println("=== Async vs Blocking getContactById (pool " + poolSize + ", "
+                    + measureNanos / 1_000_000_000L + " s per run) ===\n");
+            System.out.printf("%-36s %10s %10s %10s %10s %8s%n", "run", "ops/s", "p50 us", "p99 us", "p99.9 us", "threads");
+
+            runBlocking("warm-up", dao, ids, poolSize, measureNanos / 5);
+            runBlocking("blocking, " + poolSize + " threads", dao, ids, poolSize, measureNanos);
+            runBlocking("blocking, " + clients + " threads", dao, ids, clients, measureNanos);
+            runAsync("async, " + clients + " in flight", asyncDao, ids, clients, measureNanos);
+            System.out.println("\nrejected async calls: " + asyncDao.getRejectedCount());
+            System.out.println(dao.getPool());
+        } finally {
+            dao.closeConnection();
+        }
+    }
+
+    // Makes sure there are rows to look up and returns their ids
+    private static int[] seed(ContactPersonDAO dao) {
+        List<ContactPerson> page = dao.getContactsPage(0, SEED_ROWS);
+        if (page.size() < SEED_ROWS) {
+            Random random = new Random(42);
+            List<ContactPerson> contacts = IntStream.range(page.size(), SEED_ROWS).mapToObj(i -> {
+                ContactPerson person = new ContactPerson();
+                person.setName("async-" + i + "-" + random.nextInt(1000));
+                return person;
+            }).collect(Collectors.toList());
+            dao.insertContacts(contacts);
+            page = dao.getContactsPage(0, SEED_ROWS);
+        }
+        return page.stream().mapToInt(ContactPerson::getId).toArray();
+    }
+
+    // One platform thread per client, each calling the blocking API in a loop
+    private static void runBlocking(String name, ContactPersonDAO dao, int[] ids, int threads, long measureNanos)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        long deadline = System.nanoTime() + measureNanos;
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    long callStart = System.nanoTime();
+                    dao.getContactById(ids[random.nextInt(ids.length)]);
+                    latency.record(System.nanoTime() - callStart);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        print(name, latency, System.nanoTime() - start, threads);
+    }
+
+    // Keeps `clients` requests in flight on the pool-sized executor: every completion issues the next request
+    private static void runAsync(String name, AsyncContactPersonDAO asyncDao, int[] ids, int clients, long measureNanos)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + measureNanos;
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            issue(asyncDao, ids, latency, failures, done, deadline);
+        }
+        done.await();
+        print(name, latency, System.nanoTime() - start, asyncDao.getDAO().getPool().getMaxSize());
+        if (failures.get() > 0) {
+            System.out.println("  failed calls: " + failures.get());
+        }
+    }
+
+    private static void issue(AsyncContactPersonDAO asyncDao, int[] ids, LatencyHistogram latency, AtomicLong failures,
+                              CountDownLatch done, long deadline) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        long callStart = System.nanoTime();
+        asyncDao.getContactByIdAsync(ids[ThreadLocalRandom.current().nextInt(ids.length)])
+                .whenComplete((contact, error) -> {
+                    latency.record(System.nanoTime() - callStart);
+                    if (error != null) {
+                        failures.incrementAndGet();
+                    }
+                    issue(asyncDao, ids, latency, failures, done, deadline);
+                });
+    }
+
+    private static void print(String name, LatencyHistogram latency, long elapsedNanos, int threads) {
+        System.out.printf("%-36s %10.1f %10.1f %10.1f %10.1f %8d%n", name,
+                latency.getCount() / (elapsedNanos / 1e9),
+                latency.getValueAtPercentile(0.50) / 1e3,
+                latency.getValueAtPercentile(0.99) / 1e3,
+                latency.getValueAtPercentile(0.999) / 1e3,
+                threads);
+    }
+}
@@ -0,0 +1,117 @@
+package ContactPersonWithDataSource;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Non-blocking facade over a ContactPersonDAO for callers that must not block, such as event-loop threads.
+// Calls run on a dedicated executor with one thread per pooled connection, so no more calls than the pool
+// can serve are in flight; the rest wait in a bounded queue. When that queue is full the returned future
+// fails with RejectedExecutionException instead of piling up work.
+// Only single-connection operations are offered: streams and bulk updates hold connections beyond one call.
+//
+// A failed call completes its future exceptionally with a RuntimeException wrapping the SQLException, where
+// the blocking DAO would print it and return an empty list, null or false.
+//
+// The executor uses platform threads. The project's language level is 19, where virtual threads are still a
+// preview feature, so they cannot be relied on without --enable-preview. With virtual threads the pool would
+// still be what bounds concurrency, so the executor is sized to it either way.
+public class AsyncContactPersonDAO implements AutoCloseable {
+    private final ContactPersonDAO dao;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public AsyncContactPersonDAO(ContactPersonDAO dao) {
+        this(dao, 10_000);
+    }
+
+    public AsyncContactPersonDAO(ContactPersonDAO dao, int queueCapacity) {
+        this.dao = dao;
+        int threads = dao.getPool().getMaxSize();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "AsyncContactPersonDAO-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public ContactPersonDAO getDAO() {
+        return dao;
+    }
+
+    public CompletableFuture<List<ContactPerson>> getContactsAsync() {
+        return submit(dao::getContacts);
+    }
+
+    public CompletableFuture<ContactPerson> getContactByIdAsync(int id) {
+        return submit(() -> dao.getContactById(id));
+    }
+
+    public CompletableFuture<List<ContactPerson>> getContactsPageAsync(int afterId, int limit) {
+        return submit(() -> dao.getContactsPage(afterId, limit));
+    }
+
+    public CompletableFuture<List<ContactPerson>> getContactsPageByNameAsync(String afterName, int afterId, int limit) {
+        return submit(() -> dao.getContactsPageByName(afterName, afterId, limit));
+    }
+
+    public CompletableFuture<List<ContactPerson>> getContactsForNameAsync(String name) {
+        return submit(() -> dao.getContactsForName(name));
+    }
+
+    public CompletableFuture<List<ContactPerson>> getContactsForNameAsync(String name, SearchMode mode) {
+        return submit(() -> dao.getContactsForName(name, mode));
+    }
+
+    public CompletableFuture<Boolean> insertContactPersonAsync(ContactPerson person) {
+        return submit(() -> dao.insertContactPerson(person));
+    }
+
+    // The contacts are read on the executor thread, so the Iterable must not be modified until the future completes
+    public CompletableFuture<BulkInsertResult> insertContactsAsync(Iterable<ContactPerson> contacts) {
+        return submit(() -> dao.insertContacts(contacts));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(() -> dao.callRethrowingErrors(call), executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int getQueuedCalls() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCalls() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    // Runs the calls already queued, then stops the executor; the DAO itself stays open
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
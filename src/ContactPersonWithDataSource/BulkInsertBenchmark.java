@@ -0,0 +1,62 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkInsertBenchmark {
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        System.out.println("=== Bulk Insert Benchmark (" + rows + " rows) ===\n");
+
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            dao.createContactTable();
+
+            List<ContactPerson> contacts = generateContacts("row-by-row-", rows);
+            long start = System.nanoTime();
+            for (ContactPerson person : contacts) {
+                dao.insertContactPerson(person);
+            }
+            report("insertContactPerson (row by row)", rows, System.nanoTime() - start);
+
+            for (int batchSize : new int[]{100, 1_000, 5_000}) {
+                dao.setBatchSize(batchSize);
+                contacts = generateContacts("batch-" + batchSize + "-", rows);
+                start = System.nanoTime();
+                BulkInsertResult result = dao.insertContacts(contacts);
+                report("insertContacts (batch " + batchSize + ")", result.getInsertedCount(), System.nanoTime() - start);
+            }
+
+            // A row that violates NOT NULL is rejected on its own; the rest of its chunk is still inserted
+            contacts = generateContacts("with-failure-", 10);
+            contacts.get(4).setName(null);
+            BulkInsertResult result = dao.insertContacts(contacts.stream());
+            System.out.println("\nWith one invalid row: " + result);
+            for (BulkInsertResult.Failure failure : result.getFailures()) {
+                System.out.println("- " + failure);
+            }
+        } finally {
+            dao.closeConnection();
+        }
+    }
+
+    private static List<ContactPerson> generateContacts(String prefix, int rows) {
+        List<ContactPerson> contacts = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            ContactPerson person = new ContactPerson();
+            person.setName(prefix + i);
+            person.setNickName("nick" + i);
+            person.setCellphone("010-" + (10_000_000 + i));
+            person.setMail(prefix + i + "@example.com");
+            person.setProfession(i % 2 == 0 ? "Engineer" : "Doctor");
+            contacts.add(person);
+        }
+        return contacts;
+    }
+
+    private static void report(String label, int rows, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("%-36s %8d rows  %8.2f s  %10.1f rows/s%n", label, rows, seconds, rows / seconds);
+    }
+}
@@ -0,0 +1,77 @@
+package ContactPersonWithDataSource;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkInsertResult {
+    private final List<Integer> generatedIds = new ArrayList<>();
+    private final List<Failure> failures = new ArrayList<>();
+    private int chunkCount;
+
+    void addInserted(ContactPerson person, int id) {
+        person.setId(id);
+        generatedIds.add(id);
+    }
+
+    void addFailure(int rowIndex, ContactPerson person, SQLException error) {
+        failures.add(new Failure(rowIndex, person, error));
+    }
+
+    void addChunk() {
+        chunkCount++;
+    }
+
+    public int getInsertedCount() {
+        return generatedIds.size();
+    }
+
+    // Ids of the inserted rows, in input order; failed rows are skipped
+    public List<Integer> getGeneratedIds() {
+        return generatedIds;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkInsertResult[inserted=" + getInsertedCount() +
+                ", failed=" + failures.size() +
+                ", chunks=" + chunkCount + "]";
+    }
+
+    public static class Failure {
+        private final int rowIndex;
+        private final ContactPerson person;
+        private final SQLException error;
+
+        Failure(int rowIndex, ContactPerson person, SQLException error) {
+            this.rowIndex = rowIndex;
+            this.person = person;
+            this.error = error;
+        }
+
+        public int getRowIndex() {
+            return rowIndex;
+        }
+
+        public ContactPerson getPerson() {
+            return person;
+        }
+
+        public SQLException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + rowIndex + " (" + person.getName() + "): " + error.getMessage();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ContactPersonWithDataSource;
+
+public class BulkUpdateProgress {
+    private final int chunkSize;
+    private final int startAfterId;
+    private final long startNanos = System.nanoTime();
+    private int chunks;
+    private long rowsUpdated;
+    private int lastProcessedId;
+
+    BulkUpdateProgress(int chunkSize, int startAfterId) {
+        this.chunkSize = chunkSize;
+        this.startAfterId = startAfterId;
+        this.lastProcessedId = startAfterId;
+    }
+
+    void recordChunk(int rows, int lastId) {
+        chunks++;
+        rowsUpdated += rows;
+        lastProcessedId = lastId;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getStartAfterId() {
+        return startAfterId;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public long getRowsUpdated() {
+        return rowsUpdated;
+    }
+
+    // Checkpoint: every row up to this id is committed, pass it back as afterId to resume
+    public int getLastProcessedId() {
+        return lastProcessedId;
+    }
+
+    public double getRowsPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        return seconds == 0 ? 0 : rowsUpdated / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkUpdateProgress[chunks=" + chunks +
+                ", rows=" + rowsUpdated +
+                ", lastId=" + lastProcessedId +
+                ", rows/s=" + String.format("%.1f", getRowsPerSecond()) + "]";
+    }
+}
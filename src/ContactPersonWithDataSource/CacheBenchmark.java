@@ -0,0 +1,70 @@
+package ContactPersonWithDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CacheBenchmark {
+    private static final int LOOKUPS = 20_000;
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    public static void main(String[] args) {
+        System.out.println("=== Read-Through Cache Benchmark (Zipfian id lookups) ===\n");
+
+        ContactPersonDAO dao = new ContactPersonDAO();
+        CachingContactPersonDAO cachingDao = new CachingContactPersonDAO(1_000, 60_000);
+        try {
+            dao.createContactTable();
+            int[] ids = dao.getContacts().stream().mapToInt(ContactPerson::getId).toArray();
+            if (ids.length == 0) {
+                System.out.println("ContactPerson is empty; run BulkInsertBenchmark first.");
+                return;
+            }
+            int[] keys = zipfianSample(ids, LOOKUPS, new Random(42));
+
+            System.out.printf("%-28s %12s %12s%n", "", "avg (us)", "lookups/s");
+            run("ContactPersonDAO", dao, keys);
+            run("CachingContactPersonDAO", cachingDao, keys);
+            System.out.println("\n" + cachingDao.getIdCache());
+
+            // A write through the caching DAO must not leave stale search results behind
+            String name = "cache-check-" + System.nanoTime();
+            List<ContactPerson> before = cachingDao.getContactsForName(name);
+            ContactPerson person = new ContactPerson();
+            person.setName(name);
+            cachingDao.insertContactPerson(person);
+            List<ContactPerson> after = cachingDao.getContactsForName(name);
+            System.out.println("Invalidation on insert: " + before.size() + " -> " + after.size()
+                    + (after.size() == before.size() + 1 ? " \u2713" : " \u2717"));
+        } finally {
+            dao.closeConnection();
+            cachingDao.closeConnection();
+        }
+    }
+
+    private static void run(String label, ContactPersonDAO dao, int[] keys) {
+        long start = System.nanoTime();
+        for (int id : keys) {
+            dao.getContactById(id);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-28s %12.1f %12.1f%n", label,
+                nanos / 1_000.0 / keys.length, keys.length / (nanos / 1_000_000_000.0));
+    }
+
+    // Rank r (1-based) is drawn with probability proportional to 1 / r^s, so a few ids take most lookups
+    private static int[] zipfianSample(int[] ids, int count, Random random) {
+        double[] cumulative = new double[ids.length];
+        double sum = 0;
+        for (int rank = 1; rank <= ids.length; rank++) {
+            sum += 1.0 / Math.pow(rank, ZIPF_EXPONENT);
+            cumulative[rank - 1] = sum;
+        }
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            keys[i] = ids[Math.min(index < 0 ? -index - 1 : index, ids.length - 1)];
+        }
+        return keys;
+    }
+}
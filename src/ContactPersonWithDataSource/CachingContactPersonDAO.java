@@ -0,0 +1,164 @@
+package ContactPersonWithDataSource;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// ContactPersonDAO with read-through caches for id lookups and name searches.
+// Writes made through this DAO invalidate the caches; writes made elsewhere are picked up after the TTL.
+// Cached ContactPerson objects are shared between callers and must not be modified; cached search results are
+// unmodifiable lists. A failed query is not cached, so the next call tries the database again.
+public class CachingContactPersonDAO extends ContactPersonDAO {
+    private final LruCache<Integer, ContactPerson> byId;
+    private final LruCache<String, List<ContactPerson>> byName;
+
+    public CachingContactPersonDAO(int maxEntries, long ttlMillis) {
+        byId = new LruCache<>(maxEntries, ttlMillis);
+        byName = new LruCache<>(maxEntries, ttlMillis);
+    }
+
+    public LruCache<Integer, ContactPerson> getIdCache() {
+        return byId;
+    }
+
+    public LruCache<String, List<ContactPerson>> getNameCache() {
+        return byName;
+    }
+
+    @Override
+    public ContactPerson getContactById(int id) {
+        return byId.get(id, super::getContactById);
+    }
+
+    @Override
+    public List<ContactPerson> getContactsForName(String name) {
+        List<ContactPerson> contacts = byName.get(name, this::loadUnmodifiable);
+        return contacts != null ? contacts : List.of();
+    }
+
+    // null on failure, which LruCache does not store
+    private List<ContactPerson> loadUnmodifiable(String name) {
+        try {
+            return Collections.unmodifiableList(loadContactsForName(name));
+        } catch (SQLException e) {
+            reportError(e);
+            return null;
+        }
+    }
+
+    // A new row can match any cached search but does not change any cached id lookup
+    @Override
+    public boolean insertContactPerson(ContactPerson person) {
+        try {
+            return super.insertContactPerson(person);
+        } finally {
+            byName.invalidateAll();
+        }
+    }
+
+    @Override
+    public BulkInsertResult insertContacts(Iterable<ContactPerson> contacts) {
+        try {
+            return super.insertContacts(contacts);
+        } finally {
+            byName.invalidateAll();
+        }
+    }
+
+    @Override
+    BulkInsertResult insertImportChunk(String importId, long chunk, List<ContactPerson> contacts) {
+        try {
+            return super.insertImportChunk(importId, chunk, contacts);
+        } finally {
+            byName.invalidateAll();
+        }
+    }
+
+    @Override
+    public BulkInsertResult insertContactsWithIds(Iterable<ContactPerson> contacts) {
+        try {
+            return super.insertContactsWithIds(contacts);
+        } finally {
+            byName.invalidateAll();
+        }
+    }
+
+    // ContactImporter's LOAD DATA fast path; like the other inserts it only adds rows
+    @Override
+    public long loadContactsFromCsv(Path csvFile, List<String> columns) {
+        try {
+            return super.loadContactsFromCsv(csvFile, columns);
+        } finally {
+            byName.invalidateAll();
+        }
+    }
+
+    // updateContactPerson() goes through updateContacts()
+    @Override
+    public UpsertResult upsertContacts(Collection<ContactPerson> contacts) {
+        try {
+            return super.upsertContacts(contacts);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public UpsertResult updateContacts(Collection<ContactPerson> contacts) {
+        try {
+            return super.updateContacts(contacts);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    // updateEmails() and updateEmailsInDatabase() go through these two
+    @Override
+    public BulkUpdateProgress bulkUpdate(String column, List<String> readColumns, Function<ContactPerson, ?> transform,
+                                         int afterId, Consumer<BulkUpdateProgress> listener) {
+        try {
+            return super.bulkUpdate(column, readColumns, transform, afterId, listener);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public BulkUpdateProgress bulkUpdateInDatabase(String setClause, int afterId, Consumer<BulkUpdateProgress> listener) {
+        try {
+            return super.bulkUpdateInDatabase(setClause, afterId, listener);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    // Fills the id cache from a snapshot, lowest ids first, up to the cache size. The entries age from now,
+    // so a snapshot older than the TTL still gets refreshed from the database as they expire.
+    public int preload(ContactSnapshot snapshot) {
+        int rows = Math.min(snapshot.size(), byId.getMaxSize());
+        for (int row = 0; row < rows; row++) {
+            byId.put(snapshot.getId(row), snapshot.getContact(row));
+        }
+        return rows;
+    }
+
+    // Catches the caches up with changes read from a ContactChangeFeed, instead of waiting for the TTL:
+    // every changed contact leaves the id cache, and the name cache is cleared if anything changed
+    public void applyChanges(List<ContactChange> changes) {
+        for (ContactChange change : changes) {
+            byId.invalidate(change.getContactId());
+        }
+        if (!changes.isEmpty()) {
+            byName.invalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        byId.invalidateAll();
+        byName.invalidateAll();
+    }
+}
@@ -0,0 +1,126 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+// Keeping a derived copy fresh: re-reading the whole table with getContacts() against polling the change feed,
+// after a few contacts are updated, inserted and deleted. Turns CHANGE_FEED on for its DAO, which creates the
+// outbox and its triggers in the database of file.properties.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.ChangeFeedBenchmark [changed rows]
+public class ChangeFeedBenchmark {
+    private static final int MIN_ROWS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int changedRows = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        Properties properties = ContactPersonDAO.loadProperties("src/ContactPersonWithDataSource/file.properties");
+        properties.setProperty("CHANGE_FEED", "true");
+        ContactPersonDAO dao = new ContactPersonDAO(properties);
+        System.out.println("=== Change Feed Benchmark (" + changedRows + " changed rows) ===\n");
+        try {
+            dao.createContactTable();
+            seed(dao);
+            // A consumer that has just loaded the table follows the feed from here
+            ContactChangeFeed feed = ContactChangeFeed.fromLatest(dao, 1000);
+
+            String runId = "feed-" + System.nanoTime() + "-";
+            List<ContactPerson> updated = dao.getContactsPage(0, changedRows);
+            for (ContactPerson person : updated) {
+                person.setProfession(runId + "profession");
+            }
+            dao.updateContacts(updated);
+            List<ContactPerson> inserted = new ArrayList<>();
+            for (int i = 0; i < changedRows; i++) {
+                ContactPerson person = new ContactPerson();
+                person.setName(runId + i);
+                inserted.add(person);
+            }
+            dao.insertContacts(inserted);
+            try (Connection conn = dao.getPool().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM ContactPerson WHERE name LIKE '" + runId + "%' AND id % 2 = 0");
+            }
+
+            long start = System.nanoTime();
+            List<ContactPerson> all = dao.getContacts();
+            double fullMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+            start = System.nanoTime();
+            List<ContactChange> changes = new ArrayList<>();
+            List<ContactChange> page;
+            while (!(page = feed.poll(1000)).isEmpty()) {
+                changes.addAll(page);
+            }
+            double feedMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+            System.out.printf("%-28s %10.1f ms %10d rows%n", "getContacts() re-read", fullMillis, all.size());
+            System.out.printf("%-28s %10.1f ms %10d changes%n", "change feed poll", feedMillis, changes.size());
+            System.out.printf("%nThe feed read %.2f%% of the rows in %.1fx less time%n%n",
+                    100.0 * changes.size() / all.size(), fullMillis / feedMillis);
+
+            Set<Integer> updatedIds = new HashSet<>();
+            updated.forEach(person -> updatedIds.add(person.getId()));
+            int updates = 0;
+            int inserts = 0;
+            int deletes = 0;
+            boolean current = true;
+            for (ContactChange change : changes) {
+                switch (change.getOperation()) {
+                    case UPDATE:
+                        updates += updatedIds.contains(change.getContactId()) ? 1 : 0;
+                        current &= change.getContact() != null
+                                && (runId + "profession").equals(change.getContact().getProfession());
+                        break;
+                    case INSERT:
+                        inserts++;
+                        break;
+                    default:
+                        deletes++;
+                        current &= change.getContact() == null;
+                }
+            }
+            check("every update is in the feed once", updates == updatedIds.size());
+            check("every insert is in the feed", inserts == changedRows);
+            check("every delete is in the feed", deletes == inserted.stream().filter(person -> person.getId() % 2 == 0).count());
+            check("changes carry the current row, none for deleted ones", current);
+            check("tokens are increasing", isIncreasing(changes));
+            check("nothing more to read", feed.poll(1000).isEmpty());
+            System.out.println("\npurged " + dao.purgeChanges(feed.getToken()) + " consumed changes");
+        } finally {
+            dao.closeConnection();
+        }
+    }
+
+    private static void seed(ContactPersonDAO dao) {
+        long rows = dao.countContacts();
+        if (rows >= MIN_ROWS) {
+            return;
+        }
+        List<ContactPerson> contacts = new ArrayList<>();
+        for (long i = rows; i < MIN_ROWS; i++) {
+            ContactPerson person = new ContactPerson();
+            person.setName("feed-seed-" + i);
+            person.setMail("feed-seed-" + i + "@example.com");
+            contacts.add(person);
+        }
+        dao.insertContacts(contacts);
+    }
+
+    private static boolean isIncreasing(List<ContactChange> changes) {
+        for (int i = 1; i < changes.size(); i++) {
+            if (changes.get(i).getToken() <= changes.get(i - 1).getToken()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void check(String description, boolean passed) {
+        System.out.println((passed ? "\u2713 " : "\u2717 ") + description);
+    }
+}
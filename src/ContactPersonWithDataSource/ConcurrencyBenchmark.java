@@ -0,0 +1,94 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs insert/read workers at 1, 2, 4, ... threads up to the pool size and checks that every row written is
+// visible afterwards. Exits with status 1 when a run loses rows; a worker that sees a lost or mixed-up write
+// fails the run with its exception.
+public class ConcurrencyBenchmark {
+    private static final int OPERATIONS_PER_THREAD = 200;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== ContactPersonDAO Concurrency Benchmark ===\n");
+
+        ContactPersonDAO dao = new ContactPersonDAO();
+        int failures = 0;
+        try {
+            dao.createContactTable();
+            int maxThreads = dao.getPool().getMaxSize();
+            double baseline = 0;
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                String runId = "stress-" + System.nanoTime() + "-";
+                long start = System.nanoTime();
+                int operations = runThreads(dao, threads, runId);
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                double throughput = operations / seconds;
+                if (threads == 1) {
+                    baseline = throughput;
+                }
+
+                // Every thread inserted OPERATIONS_PER_THREAD rows; all of them must be visible afterwards
+                int expected = threads * OPERATIONS_PER_THREAD;
+                int found = dao.getContactsForName(runId).size();
+                System.out.printf("threads=%2d  ops/s=%10.1f  speedup=%5.2fx  rows=%d/%d %s%n",
+                        threads, throughput, throughput / baseline, found, expected,
+                        found == expected ? "\u2713" : "\u2717 MISMATCH");
+                if (found != expected) {
+                    failures++;
+                }
+            }
+            System.out.println("\n" + dao.getPool());
+        } finally {
+            dao.closeConnection();
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Each thread alternates inserts with reads of its own rows, so a lost or mixed-up write shows up
+    private static int runThreads(ContactPersonDAO dao, int threads, String runId) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String threadPrefix = runId + t + "-";
+                Callable<Integer> task = () -> {
+                    int operations = 0;
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        ContactPerson person = new ContactPerson();
+                        person.setName(threadPrefix + i);
+                        person.setMail(threadPrefix + i + "@example.com");
+                        if (!dao.insertContactPerson(person)) {
+                            throw new IllegalStateException("Insert failed for " + person.getName());
+                        }
+                        operations++;
+                        if (i % 10 == 9) {
+                            int visible = dao.getContactsForName(threadPrefix).size();
+                            if (visible != i + 1) {
+                                throw new IllegalStateException(threadPrefix + " sees " + visible
+                                        + " rows, expected " + (i + 1));
+                            }
+                            operations++;
+                        }
+                    }
+                    return operations;
+                };
+                results.add(executor.submit(task));
+            }
+            int operations = 0;
+            for (Future<Integer> result : results) {
+                operations += result.get();
+            }
+            return operations;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Timestamp;
+
+// One row of the ContactPersonChange outbox, as returned by ContactPersonDAO.getChangesSince()
+public class ContactChange {
+    public enum Operation {
+        INSERT, UPDATE, DELETE;
+
+        static Operation of(String code) {
+            switch (code) {
+                case "I":
+                    return INSERT;
+                case "U":
+                    return UPDATE;
+                default:
+                    return DELETE;
+            }
+        }
+    }
+
+    private final long token;
+    private final int contactId;
+    private final long version;
+    private final Operation operation;
+    private final Timestamp changedAt;
+    private final ContactPerson contact;
+
+    ContactChange(long token, int contactId, long version, Operation operation, Timestamp changedAt,
+                  ContactPerson contact) {
+        this.token = token;
+        this.contactId = contactId;
+        this.version = version;
+        this.operation = operation;
+        this.changedAt = changedAt;
+        this.contact = contact;
+    }
+
+    // Position of the change in the feed; pass the last one seen to getChangesSince() to continue after it
+    public long getToken() {
+        return token;
+    }
+
+    public int getContactId() {
+        return contactId;
+    }
+
+    // The row's version column after the change; it goes up by one with every change to the row
+    public long getVersion() {
+        return version;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Timestamp getChangedAt() {
+        return changedAt;
+    }
+
+    // The row as it is when the change is read, which may already include later changes; null once deleted
+    public ContactPerson getContact() {
+        return contact;
+    }
+
+    @Override
+    public String toString() {
+        return "ContactChange[token=" + token + ", " + operation + " " + contactId + " v" + version + "]";
+    }
+}
@@ -0,0 +1,81 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// A consumer's position in the change feed of ContactPersonDAO.getChangesSince(). Each poll() returns the
+// changes after the token and moves the token past them; store getToken() to resume after a restart.
+//
+// Tokens are AUTO_INCREMENT values taken when a change is written, but changes become visible when their
+// transaction commits, so a later token can show up while an earlier one is still uncommitted. poll()
+// therefore stops in front of a gap in the tokens and only moves on once the gap is filled, or after
+// gapWaitMillis, when the missing token most likely belongs to a transaction that was rolled back.
+// Set gapWaitMillis above the longest transaction that writes contacts.
+public class ContactChangeFeed {
+    private final ContactPersonDAO dao;
+    private final long gapWaitNanos;
+    private long token;
+    private long gapToken = -1;
+    private long gapSeenNanos;
+    private long skippedGaps;
+
+    public ContactChangeFeed(ContactPersonDAO dao, long token, long gapWaitMillis) {
+        this.dao = dao;
+        this.token = token;
+        this.gapWaitNanos = TimeUnit.MILLISECONDS.toNanos(gapWaitMillis);
+    }
+
+    // Starts at the newest change, for a consumer that is about to load the whole table
+    public static ContactChangeFeed fromLatest(ContactPersonDAO dao, long gapWaitMillis) {
+        return new ContactChangeFeed(dao, dao.getLatestChangeToken(), gapWaitMillis);
+    }
+
+    // Up to limit changes in token order; empty when there is nothing new yet
+    public synchronized List<ContactChange> poll(int limit) {
+        List<ContactChange> changes = new ArrayList<>();
+        for (ContactChange change : dao.getChangesSince(token, limit)) {
+            if (change.getToken() != token + 1 && !gapExpired(token + 1)) {
+                break;
+            }
+            changes.add(change);
+            token = change.getToken();
+        }
+        return changes;
+    }
+
+    // Like poll(), keeping only the newest change of each contact, for consumers that just need every
+    // changed row once, such as a cache
+    public List<ContactChange> pollLatest(int limit) {
+        Map<Integer, ContactChange> latest = new LinkedHashMap<>();
+        for (ContactChange change : poll(limit)) {
+            latest.remove(change.getContactId());
+            latest.put(change.getContactId(), change);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private boolean gapExpired(long missingToken) {
+        long now = System.nanoTime();
+        if (gapToken != missingToken) {
+            gapToken = missingToken;
+            gapSeenNanos = now;
+        }
+        if (now - gapSeenNanos < gapWaitNanos) {
+            return false;
+        }
+        skippedGaps++;
+        return true;
+    }
+
+    public synchronized long getToken() {
+        return token;
+    }
+
+    // Gaps given up on after gapWaitMillis
+    public synchronized long getSkippedGaps() {
+        return skippedGaps;
+    }
+}
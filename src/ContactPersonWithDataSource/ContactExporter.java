@@ -0,0 +1,459 @@
+package ContactPersonWithDataSource;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Exports the ContactPerson table by splitting the id range into partitions and reading them in parallel,
+// each through its own cursor on its own pooled connection. Partitions are written to one file each, or to
+// part files that are concatenated in id order into a single file at the end.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.ContactExporter <file> [partitions] [--merge] [--sampled]
+//   the format follows the extension: .csv, .ndjson or .cpb (binary)
+public class ContactExporter {
+    public enum Format {
+        CSV("csv"), NDJSON("ndjson"), BINARY("cpb");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(Path file) {
+            String name = file.getFileName().toString();
+            for (Format format : values()) {
+                if (name.endsWith("." + format.extension)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format: " + name);
+        }
+    }
+
+    public enum Partitioning {
+        // MIN(id)..MAX(id) cut into equal id ranges: free to compute, uneven when ids have large gaps
+        EQUAL_RANGES,
+        // Ranges cut at quantiles of the row density sampled across the id range: about the same row count per
+        // partition, at the cost of a few hundred short primary key reads
+        SAMPLED
+    }
+
+    private static final String[] HEADER = {"id", "name", "nickname", "address", "homePhone", "workPhone",
+            "cellphone", "mail", "birthdate", "website", "profession"};
+    // Binary format: this magic, then per row the id as a varint, nine strings (name, nickname, address,
+    // homePhone, workPhone, cellphone, mail, website, profession) as VarInts strings, and the birthdate
+    // as zigzag epoch day + 1, or 0 for null
+    private static final byte[] BINARY_MAGIC = {'C', 'P', 'B', '1'};
+    // SAMPLED reads up to RUN_LENGTH ids at the start of each of PROBES_PER_PARTITION * partitions equal id ranges
+    private static final int PROBES_PER_PARTITION = 32;
+    private static final int RUN_LENGTH = 64;
+    // readBinary() maps files in windows of this size; a single mapping cannot exceed 2 GB
+    private static final int READ_WINDOW_BYTES = 64 << 20;
+
+    private final ContactPersonDAO dao;
+    private int partitions;
+    private Partitioning partitioning = Partitioning.EQUAL_RANGES;
+
+    public ContactExporter(ContactPersonDAO dao) {
+        this.dao = dao;
+        this.partitions = dao.getPool().getMaxSize();
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public void setPartitioning(Partitioning partitioning) {
+        this.partitioning = partitioning;
+    }
+
+    // With merge the result is the single target file; otherwise partition i goes to <name>.part-<i>.<ext>
+    public ExportResult export(Path target, boolean merge) throws IOException {
+        Format format = Format.of(target);
+        List<int[]> ranges = computeRanges();
+        ExportResult result = new ExportResult(ranges.size());
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            files.add(partitionFile(target, i, merge));
+        }
+
+        // More readers than connections would only queue on the pool
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(ranges.size(), dao.getPool().getMaxSize())));
+        long rows = 0;
+        try {
+            List<Future<Long>> counts = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                int[] range = ranges.get(i);
+                Path file = files.get(i);
+                counts.add(executor.submit(() -> writePartition(range, file, format, !merge)));
+            }
+            for (Future<Long> count : counts) {
+                rows += count.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Export failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (merge) {
+            mergeInto(target, files, format);
+            files = List.of(target);
+        }
+        long bytes = 0;
+        for (Path file : files) {
+            bytes += Files.size(file);
+        }
+        result.finish(files, rows, bytes);
+        return result;
+    }
+
+    // (afterId, lastId] pairs covering every id, in id order
+    List<int[]> computeRanges() {
+        List<int[]> ranges = new ArrayList<>();
+        int[] idRange = dao.getIdRange();
+        if (idRange == null) {
+            return ranges;
+        }
+        long afterId = idRange[0] - 1L;
+        if (partitioning == Partitioning.SAMPLED && partitions > 1) {
+            for (long split : sampleSplits(idRange[0], idRange[1])) {
+                if (split > afterId && split < idRange[1]) {
+                    ranges.add(new int[]{(int) afterId, (int) split});
+                    afterId = split;
+                }
+            }
+        } else {
+            long step = Math.max(1, ((long) idRange[1] - afterId + partitions - 1) / partitions);
+            while (afterId + step < idRange[1]) {
+                ranges.add(new int[]{(int) afterId, (int) (afterId + step)});
+                afterId += step;
+            }
+        }
+        ranges.add(new int[]{(int) afterId, idRange[1]});
+        return ranges;
+    }
+
+    // Cuts minId..maxId into equal probe ranges and estimates the rows of each from the ids at its start: the
+    // exact count when the run of ids reaches past the range, otherwise run length over the ids it spans.
+    // Returns the ids at which the estimated row count crosses each 1/partitions quantile.
+    private List<Long> sampleSplits(long minId, long maxId) {
+        long span = maxId - minId + 1;
+        int probes = (int) Math.min((long) partitions * PROBES_PER_PARTITION, span);
+        long[] starts = new long[probes + 1];
+        double[] rows = new double[probes];
+        double total = 0;
+        for (int j = 0; j <= probes; j++) {
+            starts[j] = minId + span * j / probes;
+        }
+        for (int j = 0; j < probes; j++) {
+            List<Integer> ids = dao.getIdsFrom((int) starts[j], RUN_LENGTH);
+            int inside = 0;
+            while (inside < ids.size() && ids.get(inside) < starts[j + 1]) {
+                inside++;
+            }
+            if (inside < RUN_LENGTH) {
+                rows[j] = inside;
+            } else {
+                rows[j] = (double) RUN_LENGTH * (starts[j + 1] - starts[j]) / (ids.get(RUN_LENGTH - 1) - starts[j] + 1);
+            }
+            total += rows[j];
+        }
+
+        List<Long> splits = new ArrayList<>();
+        double seen = 0;
+        int j = 0;
+        for (int i = 1; i < partitions; i++) {
+            double target = total * i / partitions;
+            while (j < probes && seen + rows[j] < target) {
+                seen += rows[j++];
+            }
+            if (j == probes) {
+                break;
+            }
+            // Rows are taken as evenly spread within a probe range
+            long width = starts[j + 1] - starts[j];
+            splits.add(starts[j] + (long) ((target - seen) / rows[j] * width));
+        }
+        return splits;
+    }
+
+    private static Path partitionFile(Path target, int partition, boolean merge) {
+        String name = target.getFileName().toString();
+        if (merge) {
+            return target.resolveSibling(name + ".part-" + partition + ".tmp");
+        }
+        int dot = name.lastIndexOf('.');
+        return target.resolveSibling(String.format("%s.part-%03d%s", name.substring(0, dot), partition, name.substring(dot)));
+    }
+
+    private long writePartition(int[] range, Path file, Format format, boolean withHeader) throws IOException {
+        try (Stream<ContactPerson> contacts = dao.streamContactsInRange(range[0], range[1]);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            if (withHeader) {
+                writeHeader(out, format);
+            }
+            StringBuilder line = new StringBuilder(256);
+            long rows = 0;
+            Iterator<ContactPerson> iterator = contacts.iterator();
+            while (iterator.hasNext()) {
+                ContactPerson contact = iterator.next();
+                if (format == Format.BINARY) {
+                    writeBinary(out, contact);
+                } else {
+                    line.setLength(0);
+                    if (format == Format.CSV) {
+                        appendCsv(line, contact);
+                    } else {
+                        appendJson(line, contact);
+                    }
+                    out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    private static void writeHeader(OutputStream out, Format format) throws IOException {
+        if (format == Format.CSV) {
+            out.write((String.join(",", HEADER) + "\n").getBytes(StandardCharsets.UTF_8));
+        } else if (format == Format.BINARY) {
+            out.write(BINARY_MAGIC);
+        }
+    }
+
+    // Writes the header, then appends the part files in order, deleting each one
+    private static void mergeInto(Path target, List<Path> parts, Format format) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(Channels.newOutputStream(out), format);
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                Files.delete(part);
+            }
+        }
+    }
+
+    private static void appendCsv(StringBuilder line, ContactPerson contact) {
+        line.append(contact.getId());
+        for (String value : new String[]{contact.getName(), contact.getNickName(), contact.getAddress(),
+                contact.getHomePhone(), contact.getWorkPhone(), contact.getCellphone(), contact.getMail()}) {
+            line.append(',');
+            appendCsvField(line, value);
+        }
+        line.append(',');
+        if (contact.getBirthdate() != null) {
+            line.append(toLocalDate(contact.getBirthdate()));
+        }
+        line.append(',');
+        appendCsvField(line, contact.getWebsite());
+        line.append(',');
+        appendCsvField(line, contact.getProfession());
+        line.append('\n');
+    }
+
+    private static void appendCsvField(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void appendJson(StringBuilder line, ContactPerson contact) {
+        line.append("{\"id\":").append(contact.getId());
+        appendJsonField(line, "name", contact.getName());
+        appendJsonField(line, "nickname", contact.getNickName());
+        appendJsonField(line, "address", contact.getAddress());
+        appendJsonField(line, "homePhone", contact.getHomePhone());
+        appendJsonField(line, "workPhone", contact.getWorkPhone());
+        appendJsonField(line, "cellphone", contact.getCellphone());
+        appendJsonField(line, "mail", contact.getMail());
+        appendJsonField(line, "birthdate",
+                contact.getBirthdate() == null ? null : toLocalDate(contact.getBirthdate()).toString());
+        appendJsonField(line, "website", contact.getWebsite());
+        appendJsonField(line, "profession", contact.getProfession());
+        line.append("}\n");
+    }
+
+    private static void appendJsonField(StringBuilder line, String name, String value) {
+        line.append(",\"").append(name).append("\":");
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    private static void writeBinary(OutputStream out, ContactPerson contact) throws IOException {
+        VarInts.writeUnsigned(out, contact.getId());
+        VarInts.writeString(out, contact.getName());
+        VarInts.writeString(out, contact.getNickName());
+        VarInts.writeString(out, contact.getAddress());
+        VarInts.writeString(out, contact.getHomePhone());
+        VarInts.writeString(out, contact.getWorkPhone());
+        VarInts.writeString(out, contact.getCellphone());
+        VarInts.writeString(out, contact.getMail());
+        VarInts.writeString(out, contact.getWebsite());
+        VarInts.writeString(out, contact.getProfession());
+        VarInts.writeUnsigned(out, contact.getBirthdate() == null ? 0
+                : VarInts.zigzag(toLocalDate(contact.getBirthdate()).toEpochDay()) + 1);
+    }
+
+    // Reads a merged binary export, or one partition file, through memory mappings of READ_WINDOW_BYTES each.
+    // A row cut off at the end of a window is read again from the start of the next one.
+    public static void readBinary(Path file, Consumer<ContactPerson> action) throws IOException {
+        readBinary(file, action, READ_WINDOW_BYTES);
+    }
+
+    static void readBinary(Path file, Consumer<ContactPerson> action, int windowBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] magic = new byte[BINARY_MAGIC.length];
+            if (size < magic.length) {
+                throw new IOException("Not a binary contact export: " + file);
+            }
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, magic.length).get(magic);
+            if (!Arrays.equals(magic, BINARY_MAGIC)) {
+                throw new IOException("Not a binary contact export: " + file);
+            }
+            long position = BINARY_MAGIC.length;
+            while (position < size) {
+                long length = Math.min(windowBytes, size - position);
+                boolean lastWindow = position + length == size;
+                MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                while (in.hasRemaining()) {
+                    int rowStart = in.position();
+                    ContactPerson contact;
+                    try {
+                        contact = readBinaryRow(in);
+                    } catch (BufferUnderflowException e) {
+                        if (lastWindow || rowStart == 0) {
+                            throw new IOException((lastWindow ? "Truncated binary contact export: "
+                                    : "Row larger than the read window in ") + file, e);
+                        }
+                        in.position(rowStart);
+                        break;
+                    }
+                    action.accept(contact);
+                }
+                position += in.position();
+            }
+        }
+    }
+
+    private static ContactPerson readBinaryRow(ByteBuffer in) {
+        ContactPerson contact = new ContactPerson();
+        contact.setId((int) VarInts.readUnsigned(in));
+        contact.setName(VarInts.readString(in));
+        contact.setNickName(VarInts.readString(in));
+        contact.setAddress(VarInts.readString(in));
+        contact.setHomePhone(VarInts.readString(in));
+        contact.setWorkPhone(VarInts.readString(in));
+        contact.setCellphone(VarInts.readString(in));
+        contact.setMail(VarInts.readString(in));
+        contact.setWebsite(VarInts.readString(in));
+        contact.setProfession(VarInts.readString(in));
+        long birthdate = VarInts.readUnsigned(in);
+        if (birthdate != 0) {
+            contact.setBirthdate(Date.valueOf(LocalDate.ofEpochDay(VarInts.unzigzag(birthdate - 1))));
+        }
+        return contact;
+    }
+
+    private static LocalDate toLocalDate(java.util.Date date) {
+        return date instanceof Date ? ((Date) date).toLocalDate() : new Date(date.getTime()).toLocalDate();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: ContactExporter <file.csv|file.ndjson|file.cpb> [partitions] [--merge] [--sampled]");
+            return;
+        }
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            ContactExporter exporter = new ContactExporter(dao);
+            boolean merge = false;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--merge")) {
+                    merge = true;
+                } else if (args[i].equals("--sampled")) {
+                    exporter.setPartitioning(Partitioning.SAMPLED);
+                } else {
+                    exporter.setPartitions(Integer.parseInt(args[i]));
+                }
+            }
+            System.out.println(exporter.export(Paths.get(args[0]), merge));
+        } finally {
+            dao.closeConnection();
+        }
+    }
+}
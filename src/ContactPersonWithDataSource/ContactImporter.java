@@ -0,0 +1,899 @@
+package ContactPersonWithDataSource;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Imports contacts from CSV (with a header line) or NDJSON files through ContactPersonDAO.
+//
+// The file is cut into byte ranges that end on a record boundary and reader threads read the ranges in
+// parallel through their own FileChannel, cutting each into chunks of BATCH_SIZE records and parsing them
+// into ContactPerson objects. A CSV boundary is a line break outside quotes, found from the quotes counted
+// in parallel before it. Parsed chunks wait in a bounded queue for the writer threads, each of which inserts
+// one chunk per transaction on its own pooled connection.
+//
+// Lines that cannot be parsed or that the database refuses go to a rejects file as
+// "<line>\t<reason>\t<record>". With a checkpoint file every chunk is recorded in ContactImportChunk in the
+// transaction that inserts its rows, so running the same import again skips exactly the chunks that were
+// committed and none is imported twice. Only the rejects of a chunk committed just before a crash can be
+// missing from the rejects file.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.ContactImporter <file> [--load-data]
+public class ContactImporter {
+    public enum Format {
+        CSV, NDJSON;
+
+        // .ndjson, .jsonl and .json files are NDJSON, anything else CSV
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? NDJSON : CSV;
+        }
+    }
+
+    private static final List<String> FIELDS = List.of("name", "nickname", "address", "homePhone", "workPhone",
+            "cellphone", "mail", "birthdate", "website", "profession");
+    // Column sizes of the ContactPerson table, checked here so a long value rejects one line, not a batch
+    private static final Map<String, Integer> MAX_LENGTHS = Map.of("name", 100, "nickname", 50, "address", 200,
+            "homePhone", 20, "workPhone", 20, "cellphone", 20, "mail", 100, "website", 100, "profession", 100);
+    // Smallest byte range worth a reader of its own
+    private static final long MIN_RANGE_BYTES = 1 << 20;
+    private static final ParsedChunk END = new ParsedChunk(-1);
+
+    private final ContactPersonDAO dao;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private int writerThreads;
+    private Consumer<ImportResult> progressListener;
+
+    public ContactImporter(ContactPersonDAO dao) {
+        this.dao = dao;
+        // Leave connections for the rest of the application
+        writerThreads = Math.max(1, Math.min(4, dao.getPool().getMaxSize() / 2));
+    }
+
+    // Number of byte ranges read and parsed at the same time
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    // Called from a writer thread after every committed chunk
+    public void setProgressListener(Consumer<ImportResult> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public ImportResult importFile(Path input, Path rejectsFile, Path checkpointFile) throws IOException {
+        return importFile(input, Format.of(input), rejectsFile, checkpointFile);
+    }
+
+    // Pass a null checkpointFile to import from the start without recording progress.
+    // Throws if a chunk cannot be written; the chunks committed so far are skipped when the import runs again.
+    public ImportResult importFile(Path input, Format format, Path rejectsFile, Path checkpointFile) throws IOException {
+        ImportResult result = new ImportResult();
+        boolean csv = format == Format.CSV;
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile, dao.getBatchSize(), Files.size(input));
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        BlockingQueue<ParsedChunk> queue = new ArrayBlockingQueue<>(writerThreads * 2);
+
+        String[] header = null;
+        long dataStart = 0;
+        long dataLine = 0;
+        if (csv) {
+            try (RecordReader reader = new RecordReader(input, true, 0, checkpoint.inputSize, 0)) {
+                header = parseHeader(reader.next());
+                dataStart = reader.offset;
+                dataLine = reader.line;
+            }
+        }
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, parserThreads));
+        List<Thread> writers = new ArrayList<>();
+        try (RejectWriter rejects = new RejectWriter(rejectsFile)) {
+            if (checkpoint.ranges == 0) {
+                checkpoint.ranges = (int) Math.max(1, Math.min(parserThreads,
+                        (checkpoint.inputSize - dataStart) / MIN_RANGE_BYTES));
+                checkpoint.save();
+            }
+            List<long[]> ranges = split(input, csv, dataStart, dataLine, checkpoint.inputSize, checkpoint.ranges, readers);
+            Set<Long> imported = checkpoint.importId == null ? Set.of() : dao.getImportedChunks(checkpoint.importId);
+            try {
+                for (int i = 0; i < writerThreads; i++) {
+                    Thread writer = new Thread(() -> write(queue, rejects, checkpoint.importId, result, failure),
+                            "ContactImporter-writer-" + i);
+                    writers.add(writer);
+                    writer.start();
+                }
+                for (long[] range : ranges) {
+                    String[] columns = header;
+                    readers.execute(() -> read(input, format, columns, range, checkpoint.chunkRows, imported,
+                            queue, result, failure));
+                }
+            } finally {
+                // Let every parsed chunk reach a writer before the rejects file closes
+                readers.shutdown();
+                awaitQuietly(readers);
+                for (int i = 0; i < writers.size(); i++) {
+                    putQuietly(queue, END);
+                }
+                for (Thread writer : writers) {
+                    joinQuietly(writer);
+                }
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+
+        result.finish();
+        if (failure.get() != null) {
+            throw new IOException("Import stopped; run it again to resume from " + checkpointFile, failure.get());
+        }
+        if (checkpoint.importId != null) {
+            dao.deleteImportChunks(checkpoint.importId);
+        }
+        checkpoint.delete();
+        return result;
+    }
+
+    // Hands a whole CSV file to LOAD DATA LOCAL INFILE: much faster, but rows are neither validated nor
+    // rejected one by one, and the import cannot resume. See ContactPersonDAO.loadContactsFromCsv.
+    public long loadDataLocalInfile(Path csvFile) throws IOException {
+        String[] header;
+        try (RecordReader reader = new RecordReader(csvFile, true, 0, Files.size(csvFile), 0)) {
+            header = parseHeader(reader.next());
+        }
+        List<String> columns = new ArrayList<>();
+        for (String column : header) {
+            columns.add(column == null ? "id" : column);
+        }
+        return dao.loadContactsFromCsv(csvFile, columns);
+    }
+
+    // Cuts dataStart..size into count byte ranges {start, end, line before start} that each begin on a record.
+    // In CSV a line break ends a record only outside quotes, so the quotes before each nominal cut point are
+    // counted in parallel and the range starts after the first line break at or past it with an even count.
+    private static List<long[]> split(Path input, boolean csv, long dataStart, long dataLine, long size, int count,
+                                      ExecutorService executor) throws IOException {
+        long[] cuts = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            cuts[i] = dataStart + (size - dataStart) * i / count;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            List<Future<long[]>> counts = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long from = cuts[i];
+                long to = cuts[i + 1];
+                counts.add(executor.submit(() -> countQuotesAndLines(channel, from, to)));
+            }
+            long quotes = 0;
+            long lines = dataLine;
+            long start = dataStart;
+            long startLine = dataLine;
+            for (int i = 1; i < count; i++) {
+                long[] counted = resultOf(counts.get(i - 1));
+                quotes += counted[0];
+                lines += counted[1];
+                long[] boundary = nextBoundary(channel, csv, cuts[i], size, quotes % 2 == 1, lines);
+                if (boundary[0] > start) {
+                    ranges.add(new long[]{start, boundary[0], startLine});
+                    start = boundary[0];
+                    startLine = boundary[1];
+                }
+            }
+            if (start < size) {
+                ranges.add(new long[]{start, size, startLine});
+            }
+        }
+        return ranges;
+    }
+
+    // Quotes and line breaks in from..to, read with positional reads so ranges can share the channel
+    private static long[] countQuotesAndLines(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long quotes = 0;
+        long lines = 0;
+        long position = from;
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quotes++;
+                } else if (b == '\n') {
+                    lines++;
+                }
+            }
+            position += n;
+        }
+        return new long[]{quotes, lines};
+    }
+
+    // {offset, line} just after the first record-ending line break at or after position, or {size, line} if none
+    private static long[] nextBoundary(FileChannel channel, boolean csv, long position, long size, boolean inQuotes,
+                                       long line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (csv && b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n') {
+                    line++;
+                    if (!csv || !inQuotes) {
+                        return new long[]{position + i + 1, line};
+                    }
+                }
+            }
+            position += n;
+        }
+        return new long[]{size, line};
+    }
+
+    // Reads one byte range in chunks of chunkRows records; a chunk is identified by the offset of its first
+    // record, which stays the same across runs as long as the file and the number of ranges do
+    private static void read(Path input, Format format, String[] header, long[] range, int chunkRows, Set<Long> imported,
+                             BlockingQueue<ParsedChunk> queue, ImportResult result, AtomicReference<Exception> failure) {
+        try (RecordReader reader = new RecordReader(input, format == Format.CSV, range[0], range[1], range[2])) {
+            while (failure.get() == null) {
+                RawChunk chunk = new RawChunk(reader.offset);
+                while (chunk.records.size() < chunkRows) {
+                    long firstLine = reader.line + 1;
+                    String record = reader.next();
+                    if (record == null) {
+                        break;
+                    }
+                    chunk.records.add(record);
+                    chunk.lines.add(firstLine);
+                }
+                if (chunk.records.isEmpty()) {
+                    return;
+                }
+                if (imported.contains(chunk.index)) {
+                    result.addSkippedChunk();
+                    continue;
+                }
+                queue.put(parse(chunk, format, header));
+            }
+        } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void write(BlockingQueue<ParsedChunk> queue, RejectWriter rejects, String importId,
+                       ImportResult result, AtomicReference<Exception> failure) {
+        while (true) {
+            ParsedChunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                return;
+            }
+            if (chunk == END) {
+                return;
+            }
+            // After a failure keep taking chunks so the readers are not left blocked on a full queue
+            if (failure.get() != null) {
+                continue;
+            }
+            try {
+                int read = chunk.contacts.size() + chunk.rejects.size();
+                BulkInsertResult insertResult;
+                if (importId != null) {
+                    // Recorded even when every line was rejected, so a rerun does not reject them again
+                    insertResult = dao.insertImportChunk(importId, chunk.index, chunk.contacts);
+                    if (insertResult == null) {
+                        result.addSkippedChunk();
+                        continue;
+                    }
+                } else {
+                    insertResult = chunk.contacts.isEmpty() ? new BulkInsertResult() : dao.insertContacts(chunk.contacts);
+                }
+                for (BulkInsertResult.Failure rowFailure : insertResult.getFailures()) {
+                    int row = rowFailure.getRowIndex();
+                    chunk.rejects.add(new Reject(chunk.contactLines.get(row),
+                            rowFailure.getError().getMessage(), chunk.contactRecords.get(row)));
+                }
+                rejects.write(chunk.rejects);
+                result.addChunk(read, insertResult.getInsertedCount(), chunk.rejects.size());
+                if (progressListener != null) {
+                    progressListener.accept(result);
+                }
+            } catch (RuntimeException | IOException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    private static ParsedChunk parse(RawChunk raw, Format format, String[] header) {
+        ParsedChunk chunk = new ParsedChunk(raw.index);
+        for (int i = 0; i < raw.records.size(); i++) {
+            String record = raw.records.get(i);
+            long line = raw.lines.get(i);
+            if (record.isBlank()) {
+                continue;
+            }
+            try {
+                Map<String, String> values = format == Format.CSV ? parseCsvRecord(record, header) : parseJsonRecord(record);
+                chunk.contacts.add(toContact(values));
+                chunk.contactLines.add(line);
+                chunk.contactRecords.add(record);
+            } catch (IllegalArgumentException e) {
+                chunk.rejects.add(new Reject(line, e.getMessage(), record));
+            }
+        }
+        return chunk;
+    }
+
+    // Maps each CSV column to a ContactPerson field; "id" and unknown columns map to null and are ignored
+    private static String[] parseHeader(String headerLine) {
+        if (headerLine == null) {
+            throw new IllegalArgumentException("CSV file is empty");
+        }
+        if (headerLine.startsWith("\uFEFF")) {
+            headerLine = headerLine.substring(1);
+        }
+        List<String> names = parseCsvFields(headerLine);
+        String[] header = new String[names.size()];
+        boolean hasName = false;
+        for (int i = 0; i < header.length; i++) {
+            header[i] = fieldOf(names.get(i).trim());
+            hasName |= "name".equals(header[i]);
+        }
+        if (!hasName) {
+            throw new IllegalArgumentException("CSV header has no name column: " + headerLine);
+        }
+        return header;
+    }
+
+    private static String fieldOf(String key) {
+        for (String field : FIELDS) {
+            if (field.equalsIgnoreCase(key)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> parseCsvRecord(String record, String[] header) {
+        List<String> fields = parseCsvFields(record);
+        if (fields.size() != header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " fields, found " + fields.size());
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            if (header[i] != null) {
+                values.put(header[i], fields.get(i));
+            }
+        }
+        return values;
+    }
+
+    // RFC 4180: fields separated by commas, optionally in double quotes, with "" for a quote inside quotes
+    private static List<String> parseCsvFields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            field.setLength(0);
+            if (i < record.length() && record.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= record.length()) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    char c = record.charAt(i++);
+                    if (c == '"') {
+                        if (i < record.length() && record.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (i < record.length() && record.charAt(i) != ',') {
+                    throw new IllegalArgumentException("unexpected character after quoted field at position " + i);
+                }
+            } else {
+                while (i < record.length() && record.charAt(i) != ',') {
+                    field.append(record.charAt(i++));
+                }
+            }
+            fields.add(field.toString());
+            if (i >= record.length()) {
+                return fields;
+            }
+            i++;
+        }
+    }
+
+    // One flat JSON object per line; string, number and null values are accepted, nested values are not
+    private static Map<String, String> parseJsonRecord(String record) {
+        JsonLine json = new JsonLine(record);
+        Map<String, String> values = new HashMap<>();
+        json.expect('{');
+        if (!json.consume('}')) {
+            do {
+                String key = json.string();
+                json.expect(':');
+                String value = json.value();
+                String field = fieldOf(key);
+                if (field != null) {
+                    values.put(field, value);
+                }
+            } while (json.consume(','));
+            json.expect('}');
+        }
+        json.end();
+        return values;
+    }
+
+    private static ContactPerson toContact(Map<String, String> values) {
+        ContactPerson person = new ContactPerson();
+        String name = text(values, "name");
+        if (name == null) {
+            throw new IllegalArgumentException("name is missing");
+        }
+        person.setName(name);
+        person.setNickName(text(values, "nickname"));
+        person.setAddress(text(values, "address"));
+        person.setHomePhone(text(values, "homePhone"));
+        person.setWorkPhone(text(values, "workPhone"));
+        person.setCellphone(text(values, "cellphone"));
+        person.setMail(text(values, "mail"));
+        person.setWebsite(text(values, "website"));
+        person.setProfession(text(values, "profession"));
+        String birthdate = text(values, "birthdate");
+        if (birthdate != null) {
+            try {
+                person.setBirthdate(Date.valueOf(LocalDate.parse(birthdate)));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("birthdate is not a yyyy-MM-dd date: " + birthdate);
+            }
+        }
+        return person;
+    }
+
+    // Trimmed value of a field, null when missing or empty
+    private static String text(Map<String, String> values, String field) {
+        String value = values.get(field);
+        if (value == null || (value = value.trim()).isEmpty()) {
+            return null;
+        }
+        Integer maxLength = MAX_LENGTHS.get(field);
+        if (maxLength != null && value.length() > maxLength) {
+            throw new IllegalArgumentException(field + " is longer than " + maxLength + " characters");
+        }
+        return value;
+    }
+
+    private static long[] resultOf(Future<long[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static void awaitQuietly(ExecutorService executor) {
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void putQuietly(BlockingQueue<ParsedChunk> queue, ParsedChunk chunk) {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: ContactImporter <file.csv|file.ndjson> [--load-data]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        boolean loadData = args.length > 1 && args[1].equals("--load-data");
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            dao.createContactTable();
+            if (loadData) {
+                long start = System.nanoTime();
+                long rows = new ContactImporter(dao).loadDataLocalInfile(input);
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                System.out.printf("LOAD DATA: %d rows in %.1f s (%.1f rows/s)%n", rows, seconds, rows / seconds);
+                return;
+            }
+            ContactImporter importer = new ContactImporter(dao);
+            long[] lastReport = {System.nanoTime()};
+            importer.setProgressListener(progress -> {
+                synchronized (lastReport) {
+                    if (System.nanoTime() - lastReport[0] >= 1_000_000_000L) {
+                        lastReport[0] = System.nanoTime();
+                        System.out.println(progress);
+                    }
+                }
+            });
+            ImportResult result = importer.importFile(input, Paths.get(args[0] + ".rejects"),
+                    Paths.get(args[0] + ".checkpoint"));
+            System.out.println(result);
+        } finally {
+            dao.closeConnection();
+        }
+    }
+
+    // Reads the records that start in start..end of a file through a FileChannel, tracking the byte offset and
+    // line number after the last record. end must be a record boundary.
+    private static final class RecordReader implements Closeable {
+        private final FileChannel channel;
+        private final boolean csv;
+        private final long end;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private byte[] record = new byte[256];
+        private long offset;
+        private long line;
+
+        private RecordReader(Path file, boolean csv, long start, long end, long line) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.csv = csv;
+            this.end = end;
+            this.offset = start;
+            this.line = line;
+            channel.position(start);
+            buffer.flip();
+        }
+
+        // Next record without its line ending, or null at the end of the range.
+        // In CSV a line break inside a quoted field does not end the record.
+        private String next() throws IOException {
+            if (offset >= end) {
+                return null;
+            }
+            int length = 0;
+            boolean inQuotes = false;
+            boolean read = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int n = channel.read(buffer);
+                    buffer.flip();
+                    if (n < 0) {
+                        if (!read) {
+                            return null;
+                        }
+                        line++;
+                        break;
+                    }
+                }
+                byte b = buffer.get();
+                offset++;
+                read = true;
+                if (b == '\n') {
+                    line++;
+                    if (!inQuotes) {
+                        break;
+                    }
+                }
+                if (csv && b == '"') {
+                    inQuotes = !inQuotes;
+                }
+                if (length == record.length) {
+                    record = Arrays.copyOf(record, length * 2);
+                }
+                record[length++] = b;
+            }
+            if (length > 0 && record[length - 1] == '\r') {
+                length--;
+            }
+            return new String(record, 0, length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class RejectWriter implements Closeable {
+        private final BufferedWriter out;
+
+        private RejectWriter(Path file) throws IOException {
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        private synchronized void write(List<Reject> rejects) throws IOException {
+            if (rejects.isEmpty()) {
+                return;
+            }
+            for (Reject reject : rejects) {
+                String reason = String.valueOf(reject.reason).replace('\t', ' ').replace('\n', ' ');
+                out.write(reject.line + "\t" + reason + "\t" + reject.record);
+                out.newLine();
+            }
+            // Flushed before the chunk is checkpointed, so no reject is lost in a crash
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // Identifies an import across runs: the chunks it has committed are in ContactImportChunk under importId,
+    // and the file keeps what is needed to cut the input into the same chunks again. Saved by writing a new
+    // file and renaming it over the old one.
+    private static final class Checkpoint {
+        private final Path file;
+        private final String importId;
+        private final int chunkRows;
+        private final long inputSize;
+        private int ranges;
+
+        private Checkpoint(Path file, String importId, int chunkRows, long inputSize) {
+            this.file = file;
+            this.importId = importId;
+            this.chunkRows = chunkRows;
+            this.inputSize = inputSize;
+        }
+
+        // A resumed import keeps the chunk size and ranges of the first run, since chunk offsets depend on them
+        private static Checkpoint load(Path file, int chunkRows, long inputSize) throws IOException {
+            if (file == null) {
+                return new Checkpoint(null, null, chunkRows, inputSize);
+            }
+            if (!Files.exists(file)) {
+                return new Checkpoint(file, UUID.randomUUID().toString(), chunkRows, inputSize);
+            }
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            long savedSize = Long.parseLong(properties.getProperty("inputSize"));
+            if (savedSize != inputSize) {
+                throw new IOException("Input is " + inputSize + " bytes but was " + savedSize + " when " + file +
+                        " was written; delete the checkpoint to import it from the start");
+            }
+            Checkpoint checkpoint = new Checkpoint(file, properties.getProperty("importId"),
+                    Integer.parseInt(properties.getProperty("chunkRows")), inputSize);
+            checkpoint.ranges = Integer.parseInt(properties.getProperty("ranges"));
+            return checkpoint;
+        }
+
+        private void save() throws IOException {
+            if (file == null) {
+                return;
+            }
+            Properties properties = new Properties();
+            properties.setProperty("importId", importId);
+            properties.setProperty("chunkRows", String.valueOf(chunkRows));
+            properties.setProperty("inputSize", String.valueOf(inputSize));
+            properties.setProperty("ranges", String.valueOf(ranges));
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "ContactImporter checkpoint");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void delete() throws IOException {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static final class RawChunk {
+        private final long index;
+        private final List<String> records = new ArrayList<>();
+        private final List<Long> lines = new ArrayList<>();
+
+        private RawChunk(long index) {
+            this.index = index;
+        }
+    }
+
+    private static final class ParsedChunk {
+        private final long index;
+        private final List<ContactPerson> contacts = new ArrayList<>();
+        private final List<Long> contactLines = new ArrayList<>();
+        private final List<String> contactRecords = new ArrayList<>();
+        private final List<Reject> rejects = new ArrayList<>();
+
+        private ParsedChunk(long index) {
+            this.index = index;
+        }
+    }
+
+    private static final class Reject {
+        private final long line;
+        private final String reason;
+        private final String record;
+
+        private Reject(long line, String reason, String record) {
+            this.line = line;
+            this.reason = reason;
+            this.record = record;
+        }
+    }
+
+    private static final class JsonLine {
+        private final String text;
+        private int pos;
+
+        private JsonLine(String text) {
+            this.text = text;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("expected '" + c + "' at position " + pos);
+            }
+        }
+
+        private void end() {
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw new IllegalArgumentException("unexpected content after the object at position " + pos);
+            }
+        }
+
+        private String value() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException("missing value at position " + pos);
+            }
+            char c = text.charAt(pos);
+            if (c == '"') {
+                return string();
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            while (pos < text.length() && "+-.eE0123456789".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("unsupported value at position " + pos);
+            }
+            return text.substring(start, pos);
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("unterminated string");
+                }
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("bad \\u escape at position " + pos);
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("bad \\u escape at position " + pos);
+                        }
+                        pos += 4;
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escape);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("bad escape \\" + escape + " at position " + pos);
+                }
+            }
+        }
+    }
+}
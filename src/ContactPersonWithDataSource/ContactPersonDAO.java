@@ -1,211 +1,1510 @@
 package ContactPersonWithDataSource;
 
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.sql.*;
+import java.text.Collator;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import com.mysql.cj.jdbc.MysqlDataSource;
 
 public class ContactPersonDAO {
-    private Connection conn;
-    private Statement stmt;
+    private static final List<String> COLUMNS = List.of("id", "name", "nickname", "address", "homePhone",
+            "workPhone", "cellphone", "mail", "birthdate", "website", "profession");
+    private static final String SELECT_CONTACTS = "SELECT " + String.join(", ", COLUMNS) + " FROM ContactPerson";
+    private static final String INSERT_SQL = "INSERT INTO ContactPerson (name, nickname, address, homePhone, workPhone, cellphone, mail, birthdate, website, profession) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // id last, so bindContactPerson() fills the same positions as in INSERT_SQL
+    private static final String INSERT_WITH_ID_SQL = "INSERT INTO ContactPerson (name, nickname, address, homePhone, workPhone, cellphone, mail, birthdate, website, profession, id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // The row alias replaces VALUES(column), which MySQL deprecated in 8.0.20
+    private static final String UPSERT_SQL = INSERT_SQL + " AS new ON DUPLICATE KEY UPDATE nickname = new.nickname, " +
+            "address = new.address, homePhone = new.homePhone, workPhone = new.workPhone, mail = new.mail, " +
+            "birthdate = new.birthdate, website = new.website, profession = new.profession";
+    private static final Collator KEY_COLLATOR = newKeyCollator();
+    // Values of the columns after id, in COLUMNS order, with birthdate as a LocalDate so they compare with equals()
+    private static final List<Function<ContactPerson, Object>> COLUMN_VALUES = List.of(ContactPerson::getName,
+            ContactPerson::getNickName, ContactPerson::getAddress, ContactPerson::getHomePhone, ContactPerson::getWorkPhone,
+            ContactPerson::getCellphone, ContactPerson::getMail,
+            person -> person.getBirthdate() == null ? null : new Date(person.getBirthdate().getTime()).toLocalDate(),
+            ContactPerson::getWebsite, ContactPerson::getProfession);
+    // Reads that must not see a lagging replica: ContactSnapshot's watermark and change feed, and the
+    // cursor bulkUpdate() writes back from
+    private static final Set<String> PRIMARY_ONLY_READS = Set.of("getDatabaseTimeMillis", "streamContactsUpdatedSince",
+            "bulkUpdate.read", "getChangesSince", "getLatestChangeToken",
+            "getImportedChunks");
+    // Must match the server's ngram_token_size (MySQL default: 2)
+    private static final int NGRAM_TOKEN_SIZE = 2;
+
     private MysqlDataSource dataSource;
+    private ConnectionPool pool;
+    private int batchSize;
+    private int fetchSize;
+    private boolean useCursorFetch;
+    private DAOMetrics metrics = DAOMetrics.NOOP;
+    private SlowQueryLog slowQueryLog;
+    private volatile boolean naturalKeyChecked;
+    // The server's full-text stopwords, read on the first FULLTEXT search; empty when they are turned off
+    private volatile Set<String> fullTextStopwords;
+    private ReplicaSet replicas;
+    private volatile long readYourWritesNanos;
+    private final ThreadLocal<WriteWindow> writeWindow = ThreadLocal.withInitial(WriteWindow::new);
+    private final ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> rethrowErrors = new ThreadLocal<>();
+    private WriteBehindQueue writeBehind;
+    private boolean changeFeed;
 
     public ContactPersonDAO() {
-        loadProperties();
+        this("src/ContactPersonWithDataSource/file.properties");
+    }
+
+    public ContactPersonDAO(String propertiesPath) {
+        this(loadProperties(propertiesPath));
     }
 
-    private void loadProperties() {
+    // Settings as a properties file would hold them; ShardedContactPersonDAO builds one set per shard
+    public ContactPersonDAO(Properties properties) {
+        configure(properties);
+    }
+
+    static Properties loadProperties(String propertiesPath) {
         Properties properties = new Properties();
-        try {
-            FileInputStream file = new FileInputStream("src/ContactPersonWithDataSource/file.properties");
+        try (FileInputStream file = new FileInputStream(propertiesPath)) {
             properties.load(file);
-            dataSource = new MysqlDataSource();
-            dataSource.setURL(properties.getProperty("MYSQL_DB_URL"));
-            dataSource.setUser(properties.getProperty("USER"));
-            dataSource.setPassword(properties.getProperty("PASSWORD"));
-
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
+        return properties;
     }
 
-    void closeConnection() {
+    private void configure(Properties properties) {
         try {
-            if (stmt != null) {
-                stmt.close();
+            dataSource = createDataSource(properties, properties.getProperty("MYSQL_DB_URL"));
+            batchSize = Integer.parseInt(properties.getProperty("BATCH_SIZE", "1000"));
+            useCursorFetch = Boolean.parseBoolean(properties.getProperty("USE_CURSOR_FETCH", "true"));
+            fetchSize = Integer.parseInt(properties.getProperty("FETCH_SIZE", "1000"));
+            changeFeed = Boolean.parseBoolean(properties.getProperty("CHANGE_FEED", "false"));
+
+            // Tracing is opt-in: a negative threshold hands out the driver's connections unwrapped
+            long slowQueryThreshold = Long.parseLong(properties.getProperty("SLOW_QUERY_THRESHOLD_MS", "-1"));
+            if (slowQueryThreshold >= 0) {
+                slowQueryLog = createSlowQueryLog(properties, slowQueryThreshold);
             }
-            if (conn != null) {
-                conn.close();
+            pool = createPool(properties, dataSource, Integer.parseInt(properties.getProperty("POOL_MIN_SIZE", "2")));
+
+            // Read-only methods go to the replicas when there are any; see getReadConnection()
+            List<String> replicaUrls = new ArrayList<>();
+            for (String url : properties.getProperty("MYSQL_REPLICA_URLS", "").split(",")) {
+                if (!url.isBlank()) {
+                    replicaUrls.add(url.trim());
+                }
+            }
+            if (!replicaUrls.isEmpty()) {
+                List<ConnectionPool> replicaPools = new ArrayList<>();
+                for (String url : replicaUrls) {
+                    // Replica pools open connections on demand, so a replica that is down at startup costs nothing.
+                    // A busy replica is skipped after a short wait instead of holding the read up.
+                    ConnectionPool replicaPool = createPool(properties, createDataSource(properties, url), 0);
+                    replicaPool.setAcquireTimeoutMillis(Long.parseLong(properties.getProperty("REPLICA_ACQUIRE_TIMEOUT_MS", "100")));
+                    replicaPools.add(replicaPool);
+                }
+                replicas = new ReplicaSet(replicaUrls, replicaPools,
+                        Long.parseLong(properties.getProperty("REPLICA_HEALTH_CHECK_MS", "5000")),
+                        Integer.parseInt(properties.getProperty("REPLICA_MAX_LAG_SECONDS", "-1")));
+                setReadYourWritesMillis(Long.parseLong(properties.getProperty("READ_YOUR_WRITES_MS", "0")));
             }
+
+            // none, memory or jmx; memory costs well under a microsecond per call
+            switch (properties.getProperty("METRICS", "memory")) {
+                case "none":
+                    break;
+                case "jmx":
+                    metrics = new JmxDAOMetrics(properties.getProperty("METRICS_NAME", "default"));
+                    break;
+                default:
+                    metrics = new InMemoryDAOMetrics();
+            }
+
+            // Write-behind is opt-in; without a queue queueContactPerson() inserts on the caller's thread
+            int writeBehindQueueSize = Integer.parseInt(properties.getProperty("WRITE_BEHIND_QUEUE_SIZE", "0"));
+            if (writeBehindQueueSize > 0) {
+                writeBehind = new WriteBehindQueue(this, writeBehindQueueSize,
+                        Integer.parseInt(properties.getProperty("WRITE_BEHIND_BATCH_SIZE", "500")),
+                        Long.parseLong(properties.getProperty("WRITE_BEHIND_MAX_DELAY_MS", "5")),
+                        Integer.parseInt(properties.getProperty("WRITE_BEHIND_WRITERS", "2")),
+                        Long.parseLong(properties.getProperty("WRITE_BEHIND_OFFER_TIMEOUT_MS", "1000")));
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+
+    }
+
+    private MysqlDataSource createDataSource(Properties properties, String url) throws SQLException {
+        MysqlDataSource source = new MysqlDataSource();
+        source.setURL(url);
+        source.setUser(properties.getProperty("USER"));
+        source.setPassword(properties.getProperty("PASSWORD"));
+        // Driver-side caching, complementary to the pool's own per-connection statement cache
+        source.setCachePrepStmts(Boolean.parseBoolean(properties.getProperty("CACHE_PREP_STMTS", "false")));
+        source.setUseServerPrepStmts(Boolean.parseBoolean(properties.getProperty("USE_SERVER_PREP_STMTS", "false")));
+        source.setPrepStmtCacheSize(Integer.parseInt(properties.getProperty("PREP_STMT_CACHE_SIZE", "25")));
+        // Lets the driver send a JDBC batch of inserts as multi-row INSERT statements
+        source.setRewriteBatchedStatements(Boolean.parseBoolean(properties.getProperty("REWRITE_BATCHED_STATEMENTS", "true")));
+        // With cursor fetch the server keeps the result set and sends FETCH_SIZE rows per round trip. The driver
+        // then prepares statements on the server, as a cursor needs a server-side prepared statement.
+        source.setUseCursorFetch(Boolean.parseBoolean(properties.getProperty("USE_CURSOR_FETCH", "true")));
+        // The driver serves LOAD DATA LOCAL INFILE requests only for files under this directory
+        String localInfilePath = properties.getProperty("LOAD_LOCAL_INFILE_PATH", "").trim();
+        if (!localInfilePath.isEmpty()) {
+            source.setAllowLoadLocalInfileInPath(localInfilePath);
+        }
+        return source;
     }
 
-    private boolean connect() {
-        try {
-            if (conn == null || conn.isClosed()) {
-                conn = dataSource.getConnection();
+    private ConnectionPool createPool(Properties properties, MysqlDataSource source, int minSize) {
+        ConnectionPool.ConnectionFactory connections = source::getConnection;
+        if (slowQueryLog != null) {
+            SlowQueryLog log = slowQueryLog;
+            connections = () -> TracingConnection.wrap(source.getConnection(), log);
+        }
+        ConnectionPool connectionPool = new ConnectionPool(connections, minSize,
+                Integer.parseInt(properties.getProperty("POOL_MAX_SIZE", "10")));
+        connectionPool.setAcquireTimeoutMillis(Long.parseLong(properties.getProperty("POOL_ACQUIRE_TIMEOUT_MS", "30000")));
+        connectionPool.setIdleTimeoutMillis(Long.parseLong(properties.getProperty("POOL_IDLE_TIMEOUT_MS", "600000")));
+        connectionPool.setLeakThresholdMillis(Long.parseLong(properties.getProperty("POOL_LEAK_THRESHOLD_MS", "60000")));
+        connectionPool.setStatementCacheSize(Integer.parseInt(properties.getProperty("STATEMENT_CACHE_SIZE", "32")));
+        // Leaks and failed refills count as errors of the connectionLeak and poolRefill operations
+        connectionPool.setListener(new ConnectionPool.Listener() {
+            @Override
+            public void connectionLeaked(long heldMillis, Exception borrowTrace) {
+                metrics.recordError("connectionLeak");
+                ConnectionPool.Listener.STDERR.connectionLeaked(heldMillis, borrowTrace);
             }
-            return true;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+
+            @Override
+            public void connectFailed(SQLException e) {
+                metrics.recordError("poolRefill");
+                reportError(e);
+            }
+        });
+        return connectionPool;
+    }
+
+    private SlowQueryLog createSlowQueryLog(Properties properties, long thresholdMillis) throws IOException {
+        String path = properties.getProperty("SLOW_QUERY_LOG_FILE", "").trim();
+        PrintStream out = path.isEmpty() ? System.err
+                : new PrintStream(new FileOutputStream(path, true), true, StandardCharsets.UTF_8);
+        boolean explain = Boolean.parseBoolean(properties.getProperty("SLOW_QUERY_EXPLAIN", "true"));
+        return new SlowQueryLog(thresholdMillis,
+                Integer.parseInt(properties.getProperty("SLOW_QUERY_BUFFER_SIZE", "1024")),
+                out, !path.isEmpty(),
+                Boolean.parseBoolean(properties.getProperty("SLOW_QUERY_REDACT_PARAMS", "false")),
+                explain ? dataSource::getConnection : null);
+    }
+
+    void closeConnection() {
+        // Queued contacts are written before the pool goes away
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        pool.close();
+        if (replicas != null) {
+            replicas.close();
+        }
+        metrics.close();
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
         }
     }
 
-    private ContactPerson createContactPerson(ResultSet resultSet) {
-        ContactPerson result = new ContactPerson();
+    // null unless SLOW_QUERY_THRESHOLD_MS is set
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    public DAOMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(DAOMetrics metrics) {
+        this.metrics = metrics != null ? metrics : DAOMetrics.NOOP;
+    }
+
+    // null unless MYSQL_REPLICA_URLS is set
+    public ReplicaSet getReplicas() {
+        return replicas;
+    }
+
+    // After a write through this DAO, the writing thread's reads go to the primary for this long so they see
+    // the write despite replication lag; 0 sends reads to the replicas right away. The window is per thread:
+    // other threads' reads stay on the replicas, and so do the caller's reads after a write it handed to
+    // another thread (queueContactPerson(), AsyncContactPersonDAO); use setReadFromPrimary() for those.
+    public void setReadYourWritesMillis(long readYourWritesMillis) {
+        this.readYourWritesNanos = readYourWritesMillis * 1_000_000;
+    }
+
+    // While set, reads made by the calling thread go to the primary, for work that needs the current table
+    public void setReadFromPrimary(boolean readFromPrimary) {
+        if (readFromPrimary) {
+            primaryReads.set(Boolean.TRUE);
+        } else {
+            primaryReads.remove();
+        }
+    }
+
+    // Runs call so that reads and insertContactPerson() throw a RuntimeException wrapping the SQLException
+    // instead of printing it and returning an empty result, for AsyncContactPersonDAO and ShardedContactPersonDAO
+    <T> T callRethrowingErrors(Supplier<T> call) {
+        boolean outermost = rethrowErrors.get() == null;
+        rethrowErrors.set(Boolean.TRUE);
         try {
-            result.setId(resultSet.getInt("id"));
-            result.setName(resultSet.getString("name"));
-            result.setNickName(resultSet.getString("nickname"));
-            result.setAddress(resultSet.getString("address"));
-            result.setHomePhone(resultSet.getString("homePhone"));
-            result.setWorkPhone(resultSet.getString("workPhone"));
-            result.setCellphone(resultSet.getString("cellphone"));
-            result.setMail(resultSet.getString("mail"));
-            result.setBirthdate(resultSet.getDate("birthdate"));
-            result.setWebsite(resultSet.getString("website"));
-            result.setProfession(resultSet.getString("profession"));
-        } catch (SQLException e) {
+            return call.get();
+        } finally {
+            if (outermost) {
+                rethrowErrors.remove();
+            }
+        }
+    }
+
+    // Prints the error, or throws it inside callRethrowingErrors()
+    void reportError(SQLException e) {
+        if (rethrowErrors.get() != null) {
             throw new RuntimeException(e);
         }
-        return result;
+        e.printStackTrace();
+    }
+
+    // Writes and DDL borrow through here, from the primary
+    private Connection getConnection() throws SQLException {
+        Connection conn = borrow(pool);
+        if (replicas == null || readYourWritesNanos == 0) {
+            return conn;
+        }
+        // The read-your-writes window starts when the connection is handed back, and the thread's reads stay
+        // on the primary while its write is still running
+        WriteWindow window = writeWindow.get();
+        window.writesInProgress.incrementAndGet();
+        boolean[] released = {false};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && !released[0]) {
+                        released[0] = true;
+                        window.lastWriteNanos = System.nanoTime();
+                        window.writesInProgress.decrementAndGet();
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 
+    // Read-only methods borrow through here: from a replica when one is healthy, unless the operation has
+    // to see the primary's current state or a recent write
+    private Connection getReadConnection(String operation) throws SQLException {
+        if (replicas != null && !PRIMARY_ONLY_READS.contains(operation) && primaryReads.get() == null
+                && writeWindow.get().allowsReplicaRead(readYourWritesNanos)) {
+            long start = System.nanoTime();
+            Connection conn = replicas.getConnection();
+            metrics.recordConnectionAcquire(System.nanoTime() - start);
+            if (conn != null) {
+                return conn;
+            }
+        }
+        return borrow(pool);
+    }
+
+    // Every DAO method borrows through here so pool wait time shows up in the metrics
+    private Connection borrow(ConnectionPool connectionPool) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return connectionPool.getConnection();
+        } finally {
+            metrics.recordConnectionAcquire(System.nanoTime() - start);
+        }
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    // Brings the schema up to ContactPersonSchema.MIGRATIONS; see SchemaMigrator
     public boolean createContactTable() {
+        long start = System.nanoTime();
         try {
-            if (connect()) {
-                stmt = conn.createStatement();
-                // MySQL-compatible table creation SQL
-                String createTableSQL = "CREATE TABLE IF NOT EXISTS ContactPerson (" +
-                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "name VARCHAR(100) NOT NULL, " +
-                        "nickname VARCHAR(50), " +
-                        "address VARCHAR(200), " +
-                        "homePhone VARCHAR(20), " +
-                        "workPhone VARCHAR(20), " +
-                        "cellphone VARCHAR(20), " +
-                        "mail VARCHAR(100), " +
-                        "birthdate DATE, " +
-                        "website VARCHAR(100), " +
-                        "profession VARCHAR(100)" +
-                        ")";
-
-                stmt.executeUpdate(createTableSQL);
-                System.out.println("Table 'ContactPerson' created successfully or already exists.");
-                return true;
+            SchemaMigrator migrator = new SchemaMigrator(pool);
+            // What the migrator works around goes the way of any other error, counted under its own operation
+            migrator.setListener(new SchemaMigrator.Listener() {
+                @Override
+                public void optionalStepSkipped(Migration.Step step, SQLException e) {
+                    metrics.recordError("migrationStepSkipped");
+                    reportError(new SQLException("Skipped " + step + ", will retry on the next migration",
+                            e.getSQLState(), e.getErrorCode(), e));
+                }
+
+                @Override
+                public void onlineDdlRefused(String sql, String fallback, SQLException e) {
+                    metrics.recordError("migrationOnlineDdl");
+                    reportError(new SQLException("Cannot run \"" + sql + "\"; running \"" + fallback + "\" instead",
+                            e.getSQLState(), e.getErrorCode(), e));
+                }
+            });
+            migrator.migrate(ContactPersonSchema.MIGRATIONS);
+            if (changeFeed) {
+                migrator.ensure(ContactPersonSchema.CHANGE_FEED);
             }
+            System.out.println("Table 'ContactPerson' created successfully or already exists.");
+            return true;
         } catch (SQLException e) {
+            metrics.recordError("createContactTable");
             e.printStackTrace();
+        } finally {
+            metrics.recordCall("createContactTable", System.nanoTime() - start);
         }
         return false;
     }
 
     public List<ContactPerson> getContacts() {
-        List<ContactPerson> contacts = new ArrayList<>();
+        return queryContacts("getContacts", SELECT_CONTACTS);
+    }
+
+    public ContactPerson getContactById(int id) {
+        List<ContactPerson> contacts = queryContacts("getContactById", SELECT_CONTACTS + " WHERE id = ?", id);
+        return contacts.isEmpty() ? null : contacts.get(0);
+    }
+
+    // Keyset pagination: pass 0 for the first page, then the id of the last contact of the previous page.
+    // Every page is an index seek on the primary key, so deep pages cost the same as the first one.
+    public List<ContactPerson> getContactsPage(int afterId, int limit) {
+        return queryContacts("getContactsPage", SELECT_CONTACTS + " WHERE id > ? ORDER BY id LIMIT ?", afterId, limit);
+    }
+
+    // Pass null for the first page, then the name and id of the last contact of the previous page
+    public List<ContactPerson> getContactsPageByName(String afterName, int afterId, int limit) {
+        if (afterName == null) {
+            return queryContacts("getContactsPageByName", SELECT_CONTACTS + " ORDER BY name, id LIMIT ?", limit);
+        }
+        return queryContacts("getContactsPageByName", SELECT_CONTACTS + " WHERE name > ? OR (name = ? AND id > ?) " +
+                "ORDER BY name, id LIMIT ?", afterName, afterName, afterId, limit);
+    }
+
+    private List<ContactPerson> queryContacts(String operation, String sql, Object... params) {
         try {
-            if (connect()) {
-                stmt = conn.createStatement();
-                String selectSQL = "SELECT * FROM ContactPerson";
-                ResultSet resultSet = stmt.executeQuery(selectSQL);
+            return queryContactsOrThrow(operation, sql, params);
+        } catch (SQLException e) {
+            reportError(e);
+            return new ArrayList<>();
+        }
+    }
 
+    // For callers that must tell a failed query from an empty result
+    private List<ContactPerson> queryContactsOrThrow(String operation, String sql, Object... params) throws SQLException {
+        List<ContactPerson> contacts = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = getReadConnection(operation);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                ContactPersonMapper mapper = new ContactPersonMapper(resultSet);
                 while (resultSet.next()) {
-                    ContactPerson contact = createContactPerson(resultSet);
-                    contacts.add(contact);
+                    contacts.add(mapper.map(resultSet));
                 }
-                resultSet.close();
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            metrics.recordError(operation);
+            throw e;
+        } finally {
+            metrics.recordCall(operation, System.nanoTime() - start);
         }
+        metrics.recordRows(operation, contacts.size(), 0);
         return contacts;
     }
 
+    // The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+    // Pass column names to read only those; the other ContactPerson fields are left unset.
+    // It reads through a server-side cursor (USE_CURSOR_FETCH, on by default), so closing it before the end
+    // releases the cursor and the connection without reading the remaining rows. With USE_CURSOR_FETCH = false
+    // rows are streamed instead, and closing early aborts the connection, since the driver would otherwise
+    // read the rest of the result before the connection could be reused.
+    public Stream<ContactPerson> streamContacts(String... columns) {
+        String selectSQL = columns.length == 0 ? SELECT_CONTACTS
+                : "SELECT " + selectColumns(List.of(columns)) + " FROM ContactPerson";
+        return streamQuery("streamContacts", selectSQL);
+    }
+
+    // Like streamContacts(), limited to afterId < id <= lastId in id order; a primary key range scan
+    public Stream<ContactPerson> streamContactsInRange(int afterId, int lastId, String... columns) {
+        String selectSQL = "SELECT " + (columns.length == 0 ? String.join(", ", COLUMNS) : selectColumns(List.of(columns)))
+                + " FROM ContactPerson WHERE id > ? AND id <= ? ORDER BY id";
+        return streamQuery("streamContactsInRange", selectSQL, afterId, lastId);
+    }
+
+    // {MIN(id), MAX(id)}, or null when the table is empty
+    public int[] getIdRange() {
+        List<Long> range = queryNumbers("getIdRange", "SELECT MIN(id), MAX(id) FROM ContactPerson");
+        if (range.size() < 2 || range.get(0) == null) {
+            return null;
+        }
+        return new int[]{range.get(0).intValue(), range.get(1).intValue()};
+    }
+
+    public long countContacts() {
+        List<Long> count = queryNumbers("countContacts", "SELECT COUNT(*) FROM ContactPerson");
+        return count.isEmpty() ? 0 : count.get(0);
+    }
+
+    // Up to limit ids from fromId on, in id order. A short primary key range read, so its cost does not grow
+    // with the table.
+    public List<Integer> getIdsFrom(int fromId, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        for (Long id : queryNumbers("getIdsFrom", "SELECT id FROM ContactPerson WHERE id >= ? ORDER BY id LIMIT ?",
+                fromId, limit)) {
+            ids.add(id.intValue());
+        }
+        return ids;
+    }
+
+    // Rows inserted or modified at or after the given database time (see getDatabaseTimeMillis()), in id order.
+    // An UPDATE that leaves a row unchanged does not move its updated_at; deleted rows are not reported.
+    public Stream<ContactPerson> streamContactsUpdatedSince(long sinceMillis, String... columns) {
+        String selectSQL = "SELECT " + (columns.length == 0 ? String.join(", ", COLUMNS) : selectColumns(List.of(columns)))
+                + " FROM ContactPerson WHERE updated_at >= FROM_UNIXTIME(? / 1000) ORDER BY id";
+        return streamQuery("streamContactsUpdatedSince", selectSQL, sinceMillis);
+    }
+
+    // The database clock in epoch milliseconds, the one updated_at is set from; -1 when it cannot be read
+    public long getDatabaseTimeMillis() {
+        List<Long> now = queryNumbers("getDatabaseTimeMillis", "SELECT CAST(UNIX_TIMESTAMP(CURRENT_TIMESTAMP(3)) * 1000 AS SIGNED)");
+        return now.isEmpty() || now.get(0) == null ? -1 : now.get(0);
+    }
+
+    // Up to limit changes recorded after the given token, oldest first, each with the row as it is now; pass 0
+    // to start from the beginning. A primary key range scan of the outbox, so the cost follows the number of
+    // changes rather than the size of the table. Needs CHANGE_FEED; ContactChangeFeed keeps the token and
+    // deals with changes that become visible out of order.
+    public List<ContactChange> getChangesSince(long token, int limit) {
+        String operation = "getChangesSince";
+        List<ContactChange> changes = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = getReadConnection(operation);
+             PreparedStatement pstmt = conn.prepareStatement("SELECT c.seq, c.contact_id, c.version AS change_version, " +
+                     "c.operation, c.changed_at, " + String.join(", ", COLUMNS.stream().map(column -> "p." + column)
+                     .toArray(String[]::new)) + " FROM ContactPersonChange c LEFT JOIN ContactPerson p ON p.id = c.contact_id " +
+                     "WHERE c.seq > ? ORDER BY c.seq LIMIT ?")) {
+            pstmt.setLong(1, token);
+            pstmt.setInt(2, limit);
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                ContactPersonMapper mapper = new ContactPersonMapper(resultSet);
+                while (resultSet.next()) {
+                    ContactPerson contact = mapper.map(resultSet);
+                    boolean deleted = resultSet.getObject("id") == null;
+                    changes.add(new ContactChange(resultSet.getLong("seq"), resultSet.getInt("contact_id"),
+                            resultSet.getLong("change_version"), ContactChange.Operation.of(resultSet.getString("operation")),
+                            resultSet.getTimestamp("changed_at"), deleted ? null : contact));
+                }
+            }
+        } catch (SQLException e) {
+            metrics.recordError(operation);
+            e.printStackTrace();
+        } finally {
+            metrics.recordCall(operation, System.nanoTime() - start);
+        }
+        metrics.recordRows(operation, changes.size(), 0);
+        return changes;
+    }
+
+    // The token of the newest change, or 0 when there is none. Read it before loading the full table, then
+    // follow the feed from it, so no change between the two is missed.
+    public long getLatestChangeToken() {
+        List<Long> token = queryNumbers("getLatestChangeToken", "SELECT COALESCE(MAX(seq), 0) FROM ContactPersonChange");
+        return token.isEmpty() ? 0 : token.get(0);
+    }
+
+    // Deletes the changes up to and including the token, once every consumer is past it, in chunks of
+    // BATCH_SIZE rows with a commit per chunk. Returns the number of changes deleted.
+    public long purgeChanges(long upToToken) {
+        long deleted = 0;
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM ContactPersonChange WHERE seq <= ? ORDER BY seq LIMIT ?")) {
+            pstmt.setLong(1, upToToken);
+            pstmt.setInt(2, batchSize);
+            int rows;
+            do {
+                rows = pstmt.executeUpdate();
+                deleted += rows;
+            } while (rows == batchSize);
+        } catch (SQLException e) {
+            metrics.recordError("purgeChanges");
+            throw new RuntimeException(e);
+        } finally {
+            metrics.recordCall("purgeChanges", System.nanoTime() - start);
+            metrics.recordRows("purgeChanges", 0, deleted);
+        }
+        return deleted;
+    }
+
+    // Every column of every row as a Long (null for SQL NULL)
+    private List<Long> queryNumbers(String operation, String sql, Object... params) {
+        List<Long> numbers = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = getReadConnection(operation);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                int columns = resultSet.getMetaData().getColumnCount();
+                while (resultSet.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        long value = resultSet.getLong(i);
+                        numbers.add(resultSet.wasNull() ? null : value);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            metrics.recordError(operation);
+            reportError(e);
+        } finally {
+            metrics.recordCall(operation, System.nanoTime() - start);
+        }
+        return numbers;
+    }
+
+    private static String selectColumns(List<String> columns) {
+        for (String column : columns) {
+            if (!COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("Not a ContactPerson column: " + column);
+            }
+        }
+        return String.join(", ", columns);
+    }
+
+    // Each subscription streams the table on the executor at the pace of the subscriber's requests.
+    // Reads block, so give it a dedicated executor rather than the common pool.
+    public Flow.Publisher<ContactPerson> publishContacts(Executor executor, String... columns) {
+        if (columns.length > 0) {
+            selectColumns(List.of(columns));
+        }
+        return new ContactPersonPublisher(this, executor, columns);
+    }
+
+    public void forEachContact(Consumer<ContactPerson> action) {
+        try (Stream<ContactPerson> contacts = streamContacts()) {
+            contacts.forEach(action);
+        }
+    }
+
+    private PreparedStatement prepareCursor(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // Without cursor fetch, MIN_VALUE tells the driver to stream rows instead of buffering the whole result.
+        // Closing a streamed result set reads all its remaining rows; a cursor is closed on the server instead.
+        pstmt.setFetchSize(useCursorFetch ? fetchSize : Integer.MIN_VALUE);
+        return pstmt;
+    }
+
+    // The call is timed from executeQuery until the stream is closed
+    private Stream<ContactPerson> streamQuery(String operation, String sql, Object... params) {
+        long start = System.nanoTime();
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet resultSet = null;
+        ContactPersonMapper mapper;
+        try {
+            conn = getReadConnection(operation);
+            pstmt = prepareCursor(conn, sql);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            resultSet = pstmt.executeQuery();
+            mapper = new ContactPersonMapper(resultSet);
+        } catch (SQLException e) {
+            SQLException closeFailure = closeAll(resultSet, pstmt, conn);
+            if (closeFailure != null) {
+                e.addSuppressed(closeFailure);
+            }
+            metrics.recordError(operation);
+            metrics.recordCall(operation, System.nanoTime() - start);
+            throw new RuntimeException(e);
+        }
+
+        ResultSet rows = resultSet;
+        long[] rowCount = {0};
+        boolean[] exhausted = {false};
+        Spliterator<ContactPerson> spliterator = new Spliterators.AbstractSpliterator<ContactPerson>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super ContactPerson> action) {
+                ContactPerson contact;
+                try {
+                    if (!rows.next()) {
+                        exhausted[0] = true;
+                        return false;
+                    }
+                    contact = mapper.map(rows);
+                } catch (SQLException e) {
+                    metrics.recordError(operation);
+                    throw new RuntimeException(e);
+                }
+                rowCount[0]++;
+                action.accept(contact);
+                return true;
+            }
+        };
+        AutoCloseable[] resources = {resultSet, pstmt, conn};
+        Connection connection = conn;
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            SQLException failure;
+            if (!exhausted[0] && !useCursorFetch) {
+                // Closes the physical connection at once, without reading what is left of the streamed result;
+                // the statement and result set go with it, and the pool discards it when the handle is closed
+                failure = closeAll(() -> connection.abort(Runnable::run), connection);
+            } else {
+                failure = closeAll(resources);
+            }
+            metrics.recordCall(operation, System.nanoTime() - start);
+            metrics.recordRows(operation, rowCount[0], 0);
+            if (failure != null) {
+                metrics.recordError(operation);
+                reportError(failure);
+            }
+        });
+    }
+
+    // Closes every resource even when one fails, and returns the first failure with the others suppressed
+    private static SQLException closeAll(AutoCloseable... resources) {
+        SQLException failure = null;
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                SQLException error = e instanceof SQLException ? (SQLException) e : new SQLException(e);
+                if (failure == null) {
+                    failure = error;
+                } else {
+                    failure.addSuppressed(error);
+                }
+            }
+        }
+        return failure;
+    }
+
     public List<ContactPerson> getContactsForName(String name) {
-        List<ContactPerson> contacts = new ArrayList<>();
         try {
-            if (connect()) {
-                String selectSQL = "SELECT * FROM ContactPerson WHERE name LIKE ?";
-                PreparedStatement pstmt = conn.prepareStatement(selectSQL);
-                pstmt.setString(1, "%" + name + "%");
-                ResultSet resultSet = pstmt.executeQuery();
+            return loadContactsForName(name);
+        } catch (SQLException e) {
+            reportError(e);
+            return new ArrayList<>();
+        }
+    }
+
+    // getContactsForName() without hiding failures, so CachingContactPersonDAO does not cache them
+    List<ContactPerson> loadContactsForName(String name) throws SQLException {
+        return queryContactsOrThrow("getContactsForName", SELECT_CONTACTS + " WHERE name LIKE ?", "%" + name + "%");
+    }
+
+    private void bindContactPerson(PreparedStatement pstmt, ContactPerson person) throws SQLException {
+        pstmt.setString(1, person.getName());
+        pstmt.setString(2, person.getNickName());
+        pstmt.setString(3, person.getAddress());
+        pstmt.setString(4, person.getHomePhone());
+        pstmt.setString(5, person.getWorkPhone());
+        pstmt.setString(6, person.getCellphone());
+        pstmt.setString(7, person.getMail());
+        pstmt.setDate(8,
+                person.getBirthdate() != null ? new Date(person.getBirthdate().getTime()) : null);
+        pstmt.setString(9, person.getWebsite());
+        pstmt.setString(10, person.getProfession());
+    }
+
+    public List<ContactPerson> getContactsForName(String name, SearchMode mode) {
+        switch (mode) {
+            case PREFIX:
+                return queryContacts("getContactsForName.PREFIX", SELECT_CONTACTS + " WHERE name LIKE ? ORDER BY name, id",
+                        escapeLike(name) + "%");
+            case FULLTEXT:
+                // Terms shorter than one ngram, or containing wildcards or quotes, cannot be matched through the index,
+                // nor can terms with a word the parser left without tokens
+                if (name.length() < NGRAM_TOKEN_SIZE || name.matches(".*[%_\\\\\"].*") || hasUnindexedToken(name)) {
+                    return getContactsForName(name);
+                }
+                // The phrase query narrows the rows through the index; LIKE keeps the exact substring semantics
+                return queryContacts("getContactsForName.FULLTEXT", SELECT_CONTACTS +
+                                " WHERE MATCH(name) AGAINST (? IN BOOLEAN MODE) AND name LIKE ?",
+                        "\"" + name + "\"", "%" + name + "%");
+            default:
+                return getContactsForName(name);
+        }
+    }
 
+    // The ngram parser leaves out every token that contains a stopword, and the default list holds "a" and "i",
+    // so with stopwords on, "Ali" has no indexed token and a phrase query would find nothing
+    private boolean hasUnindexedToken(String term) {
+        Set<String> stopwords = getFullTextStopwords();
+        if (stopwords == null) {
+            return true;
+        }
+        // The parser tokenizes each word on its own, and a word shorter than one ngram yields no token at all
+        for (String word : term.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+            if (word.length() < NGRAM_TOKEN_SIZE) {
+                return true;
+            }
+            for (int i = 0; i + NGRAM_TOKEN_SIZE <= word.length(); i++) {
+                String token = word.substring(i, i + NGRAM_TOKEN_SIZE);
+                for (String stopword : stopwords) {
+                    if (token.contains(stopword)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // null when the settings cannot be read, which sends FULLTEXT searches down the LIKE path until they can
+    private Set<String> getFullTextStopwords() {
+        Set<String> stopwords = fullTextStopwords;
+        if (stopwords != null) {
+            return stopwords;
+        }
+        try (Connection conn = getReadConnection("getFullTextStopwords");
+             Statement stmt = conn.createStatement()) {
+            String table;
+            try (ResultSet resultSet = stmt.executeQuery(
+                    "SELECT @@innodb_ft_enable_stopword, @@innodb_ft_server_stopword_table")) {
+                resultSet.next();
+                if (!resultSet.getBoolean(1)) {
+                    fullTextStopwords = Set.of();
+                    return fullTextStopwords;
+                }
+                table = resultSet.getString(2);
+            }
+            // The server table is given as db_name/table_name
+            String stopwordSQL = table == null || table.isEmpty()
+                    ? "SELECT value FROM information_schema.INNODB_FT_DEFAULT_STOPWORD"
+                    : "SELECT value FROM `" + table.replace("/", "`.`") + "`";
+            stopwords = new HashSet<>();
+            try (ResultSet resultSet = stmt.executeQuery(stopwordSQL)) {
                 while (resultSet.next()) {
-                    ContactPerson contact = createContactPerson(resultSet);
-                    contacts.add(contact);
+                    stopwords.add(resultSet.getString(1).toLowerCase(Locale.ROOT));
                 }
-                resultSet.close();
-                pstmt.close();
             }
+            fullTextStopwords = stopwords;
+            return stopwords;
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return contacts;
     }
 
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // Fails, returning false, when a contact with the same name and cellphone exists (uk_contact_natural_key);
+    // use upsertContacts() to insert or update
     public boolean insertContactPerson(ContactPerson person) {
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            bindContactPerson(pstmt, person);
+
+            int rowsAffected = pstmt.executeUpdate();
+            metrics.recordRows("insertContactPerson", 0, rowsAffected);
+            return rowsAffected > 0;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            metrics.recordError("insertContactPerson");
+            reportError(e.getMessage() != null && e.getMessage().contains("uk_contact_natural_key")
+                    ? new SQLIntegrityConstraintViolationException("A contact named " + person.getName()
+                    + " with cellphone " + person.getCellphone() + " already exists; use upsertContacts() to update it",
+                    e.getSQLState(), e.getErrorCode(), e)
+                    : e);
+        } catch (SQLException e) {
+            metrics.recordError("insertContactPerson");
+            reportError(e);
+        } finally {
+            metrics.recordCall("insertContactPerson", System.nanoTime() - start);
+        }
+        return false;
+    }
+
+    // Returns at once with a future that completes with the contact's id when its row is committed, together
+    // with other queued contacts in one transaction; see WriteBehindQueue. Without WRITE_BEHIND_QUEUE_SIZE the
+    // insert runs on the calling thread and the returned future is already complete.
+    public CompletableFuture<Integer> queueContactPerson(ContactPerson person) {
+        if (writeBehind != null) {
+            return writeBehind.add(person);
+        }
         try {
-            if (connect()) {
-                String insertSQL = "INSERT INTO ContactPerson (name, nickname, address, homePhone, workPhone, cellphone, mail, birthdate, website, profession) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-                PreparedStatement pstmt = conn.prepareStatement(insertSQL);
-
-                pstmt.setString(1, person.getName());
-                pstmt.setString(2, person.getNickName());
-                pstmt.setString(3, person.getAddress());
-                pstmt.setString(4, person.getHomePhone());
-                pstmt.setString(5, person.getWorkPhone());
-                pstmt.setString(6, person.getCellphone());
-                pstmt.setString(7, person.getMail());
-                pstmt.setDate(8,
-                        person.getBirthdate() != null ? new Date(person.getBirthdate().getTime()) : null);
-                pstmt.setString(9, person.getWebsite());
-                pstmt.setString(10, person.getProfession());
-
-                int rowsAffected = pstmt.executeUpdate();
-                pstmt.close();
-                return rowsAffected > 0;
+            BulkInsertResult result = insertContacts(List.of(person));
+            if (!result.getFailures().isEmpty()) {
+                return CompletableFuture.failedFuture(result.getFailures().get(0).getError());
+            }
+            return CompletableFuture.completedFuture(person.getId());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // null unless WRITE_BEHIND_QUEUE_SIZE is set
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehind;
+    }
+
+    public BulkInsertResult insertContacts(Stream<ContactPerson> contacts) {
+        return insertContacts(contacts::iterator);
+    }
+
+    public BulkInsertResult insertContacts(Iterable<ContactPerson> contacts) {
+        return insertContacts("insertContacts", contacts, false);
+    }
+
+    // Inserts the contacts under the ids they already have instead of letting AUTO_INCREMENT pick them, for
+    // callers that allocate ids themselves such as ShardedContactPersonDAO. A row whose id is taken fails
+    // like any other bad row.
+    public BulkInsertResult insertContactsWithIds(Iterable<ContactPerson> contacts) {
+        return insertContacts("insertContactsWithIds", contacts, true);
+    }
+
+    private BulkInsertResult insertContacts(String operation, Iterable<ContactPerson> contacts, boolean withIds) {
+        BulkInsertResult result = new BulkInsertResult();
+        List<ContactPerson> chunk = new ArrayList<>(batchSize);
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = withIds ? conn.prepareStatement(INSERT_WITH_ID_SQL)
+                     : conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            conn.setAutoCommit(false);
+            try {
+                int firstRow = 0;
+                for (ContactPerson person : contacts) {
+                    chunk.add(person);
+                    if (chunk.size() >= batchSize) {
+                        insertChunk(conn, pstmt, operation, chunk, withIds, firstRow, result, null);
+                        firstRow += chunk.size();
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    insertChunk(conn, pstmt, operation, chunk, withIds, firstRow, result, null);
+                }
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            metrics.recordError(operation);
+            throw new RuntimeException(e);
+        } finally {
+            metrics.recordCall(operation, System.nanoTime() - start);
+            metrics.recordRows(operation, 0, result.getInsertedCount());
         }
-        return false;
+        return result;
     }
 
-    void updateEmails() {
-        // Update mails using batches
+    // Inserts one chunk as a single batch and commits it, together with the marker statement when there is one.
+    // Any error other than rejected rows rolls the whole chunk back before it is rethrown, so
+    // setAutoCommit(true) cannot commit half of it.
+    private void insertChunk(Connection conn, PreparedStatement pstmt, String operation, List<ContactPerson> chunk,
+                             boolean withIds, int firstRow, BulkInsertResult result, PreparedStatement marker)
+            throws SQLException {
         try {
-            connect();
+            try {
+                for (ContactPerson person : chunk) {
+                    bindContactPerson(pstmt, person);
+                    if (withIds) {
+                        pstmt.setInt(11, person.getId());
+                    }
+                    pstmt.addBatch();
+                }
+                metrics.recordBatch(operation, chunk.size());
+                pstmt.executeBatch();
+                List<Integer> ids = new ArrayList<>(chunk.size());
+                if (withIds) {
+                    for (ContactPerson person : chunk) {
+                        ids.add(person.getId());
+                    }
+                } else {
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            ids.add(keys.getInt(1));
+                        }
+                    }
+                }
+                if (marker != null) {
+                    marker.executeUpdate();
+                }
+                conn.commit();
+                for (int i = 0; i < chunk.size() && i < ids.size(); i++) {
+                    result.addInserted(chunk.get(i), ids.get(i));
+                }
+            } catch (BatchUpdateException e) {
+                // One bad row fails the whole batch; redo the chunk row by row so only that row is rejected
+                conn.rollback();
+                pstmt.clearBatch();
+                insertRowByRow(conn, pstmt, chunk, withIds, firstRow, result, marker);
+            }
+        } catch (SQLException | RuntimeException e) {
+            try {
+                pstmt.clearBatch();
+                conn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        }
+        result.addChunk();
+    }
+
+    // Rows are reported as inserted only once the chunk is committed
+    private void insertRowByRow(Connection conn, PreparedStatement pstmt, List<ContactPerson> chunk, boolean withIds,
+                                int firstRow, BulkInsertResult result, PreparedStatement marker) throws SQLException {
+        List<ContactPerson> inserted = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            ContactPerson person = chunk.get(i);
+            try {
+                bindContactPerson(pstmt, person);
+                if (withIds) {
+                    pstmt.setInt(11, person.getId());
+                    pstmt.executeUpdate();
+                    inserted.add(person);
+                    ids.add(person.getId());
+                } else {
+                    pstmt.executeUpdate();
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        if (keys.next()) {
+                            inserted.add(person);
+                            ids.add(keys.getInt(1));
+                        }
+                    }
+                }
+            } catch (SQLException rowError) {
+                result.addFailure(firstRow + i, person, rowError);
+            }
+        }
+        if (marker != null) {
+            marker.executeUpdate();
+        }
+        conn.commit();
+        for (int i = 0; i < inserted.size(); i++) {
+            result.addInserted(inserted.get(i), ids.get(i));
+        }
+    }
+
+    // Inserts one ContactImporter chunk in a single transaction together with its row in ContactImportChunk, so
+    // after a crash a chunk is either imported and recorded or neither. Returns null, inserting nothing, when
+    // the chunk is already recorded for this import.
+    BulkInsertResult insertImportChunk(String importId, long chunk, List<ContactPerson> contacts) {
+        BulkInsertResult result = new BulkInsertResult();
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             PreparedStatement lookup = conn.prepareStatement("SELECT 1 FROM ContactImportChunk WHERE import_id = ? AND chunk = ?");
+             PreparedStatement marker = conn.prepareStatement("INSERT INTO ContactImportChunk (import_id, chunk) VALUES (?, ?)");
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            lookup.setString(1, importId);
+            lookup.setLong(2, chunk);
+            try (ResultSet resultSet = lookup.executeQuery()) {
+                if (resultSet.next()) {
+                    return null;
+                }
+            }
+            // A run racing this one for the same chunk fails on the primary key and rolls its copy back
+            marker.setString(1, importId);
+            marker.setLong(2, chunk);
             conn.setAutoCommit(false);
+            try {
+                if (contacts.isEmpty()) {
+                    marker.executeUpdate();
+                    conn.commit();
+                } else {
+                    insertChunk(conn, pstmt, "insertImportChunk", contacts, false, 0, result, marker);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            metrics.recordError("insertImportChunk");
+            throw new RuntimeException(e);
+        } finally {
+            metrics.recordCall("insertImportChunk", System.nanoTime() - start);
+            metrics.recordRows("insertImportChunk", 0, result.getInsertedCount());
+        }
+        return result;
+    }
 
-            PreparedStatement preparedStatement = null;
-            List<ContactPerson> contacts = getContacts();
-            preparedStatement = conn.prepareStatement("UPDATE ContactPerson SET mail = ? WHERE id = ?");
-            for (ContactPerson contact : contacts) {
-                int id = contact.getId();
-                String name = contact.getName().replace(' ','_');
+    // The chunks of an import that are already committed; a chunk missing here is checked again on insert
+    Set<Long> getImportedChunks(String importId) {
+        return new HashSet<>(queryNumbers("getImportedChunks",
+                "SELECT chunk FROM ContactImportChunk WHERE import_id = ?", importId));
+    }
 
-                preparedStatement.setString(1, name + "@edu.eg");
-                preparedStatement.setInt(2, id);
-                preparedStatement.addBatch();
+    // Called once an import is complete; its chunks are not needed to resume anymore
+    void deleteImportChunks(String importId) {
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM ContactImportChunk WHERE import_id = ?")) {
+            pstmt.setString(1, importId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            metrics.recordError("deleteImportChunks");
+            reportError(e);
+        } finally {
+            metrics.recordCall("deleteImportChunks", System.nanoTime() - start);
+        }
+    }
+
+    // Inserts the contacts that are not in the table yet and updates the ones that are, matched on the natural
+    // key (name, cellphone). Existing rows are compared with the contact first: only the columns that differ
+    // are written, and rows that already match are not written at all (see updateContacts()). Contacts
+    // without a cellphone have no natural key and are always inserted. Ids are set on the contacts that were
+    // matched, not on the inserted ones.
+    public UpsertResult upsertContacts(Collection<ContactPerson> contacts) {
+        return writeContacts("upsertContacts", contacts, true);
+    }
+
+    // Writes each contact over the row with its id, setting only the columns whose value differs from the
+    // stored one; a contact equal to its row costs a read and no write. Contacts whose id is not in the
+    // table are counted as missing and skipped.
+    public UpsertResult updateContacts(Collection<ContactPerson> contacts) {
+        return writeContacts("updateContacts", contacts, false);
+    }
+
+    public boolean updateContactPerson(ContactPerson person) {
+        try {
+            return updateContacts(List.of(person)).getUpdatedCount() > 0;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Reads the current rows of each chunk in one query, then sends the inserts and the updates as batches and
+    // commits the chunk
+    private UpsertResult writeContacts(String operation, Collection<ContactPerson> contacts, boolean byNaturalKey) {
+        UpsertResult result = new UpsertResult();
+        long start = System.nanoTime();
+        try (Connection conn = getConnection()) {
+            if (byNaturalKey) {
+                requireNaturalKey(conn);
+            }
+            conn.setAutoCommit(false);
+            try {
+                List<ContactPerson> chunk = new ArrayList<>(batchSize);
+                for (Iterator<ContactPerson> iterator = contacts.iterator(); iterator.hasNext(); ) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() >= batchSize || !iterator.hasNext()) {
+                        writeChunk(conn, operation, chunk, byNaturalKey, result);
+                        conn.commit();
+                        result.addChunk();
+                        chunk.clear();
+                    }
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-            assert preparedStatement != null;
-            int[] count = preparedStatement.executeBatch();
-            conn.commit();
-            conn.setAutoCommit(true);
-            preparedStatement.close();
         } catch (SQLException e) {
+            metrics.recordError(operation);
             throw new RuntimeException(e);
+        } finally {
+            metrics.recordCall(operation, System.nanoTime() - start);
+            metrics.recordRows(operation, result.getUpdatedCount() + result.getUnchangedCount(),
+                    result.getInsertedCount() + result.getUpdatedCount());
         }
+        result.finish();
+        return result;
+    }
 
+    private void writeChunk(Connection conn, String operation, List<ContactPerson> chunk, boolean byNaturalKey,
+                            UpsertResult result) throws SQLException {
+        Map<Object, ContactPerson> stored = byNaturalKey ? readByNaturalKey(conn, chunk) : readById(conn, chunk);
+        List<ContactPerson> inserts = new ArrayList<>();
+        // Updates grouped by the columns they set, so each group is one batch of the same statement
+        Map<List<String>, List<Object[]>> updates = new LinkedHashMap<>();
+        for (ContactPerson person : chunk) {
+            ContactPerson current = stored.get(byNaturalKey ? naturalKey(person) : (Object) person.getId());
+            if (current == null) {
+                if (byNaturalKey) {
+                    inserts.add(person);
+                } else {
+                    result.addMissing();
+                }
+                continue;
+            }
+            person.setId(current.getId());
+            List<String> changed = new ArrayList<>();
+            List<Object> values = new ArrayList<>();
+            for (int i = 1; i < COLUMNS.size(); i++) {
+                Object value = COLUMN_VALUES.get(i - 1).apply(person);
+                if (!Objects.equals(value, COLUMN_VALUES.get(i - 1).apply(current))) {
+                    changed.add(COLUMNS.get(i));
+                    values.add(value);
+                }
+            }
+            if (changed.isEmpty()) {
+                result.addUnchanged();
+                continue;
+            }
+            values.add(current.getId());
+            updates.computeIfAbsent(changed, columns -> new ArrayList<>()).add(values.toArray());
+            result.addUpdated(changed.size());
+        }
+
+        if (!inserts.isEmpty()) {
+            // A row inserted by someone else since the read above turns the insert into an update
+            try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
+                for (ContactPerson person : inserts) {
+                    bindContactPerson(pstmt, person);
+                    pstmt.addBatch();
+                }
+                metrics.recordBatch(operation, inserts.size());
+                pstmt.executeBatch();
+            }
+            inserts.forEach(person -> result.addInserted());
+        }
+        for (Map.Entry<List<String>, List<Object[]>> group : updates.entrySet()) {
+            String updateSQL = "UPDATE ContactPerson SET " + String.join(" = ?, ", group.getKey()) + " = ? WHERE id = ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(updateSQL)) {
+                for (Object[] values : group.getValue()) {
+                    for (int i = 0; i < values.length; i++) {
+                        pstmt.setObject(i + 1, values[i] instanceof LocalDate ? Date.valueOf((LocalDate) values[i]) : values[i]);
+                    }
+                    pstmt.addBatch();
+                }
+                metrics.recordBatch(operation, group.getValue().size());
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    // Keyed by naturalKey(), so a row is found for a contact whenever the unique key would match them
+    private Map<Object, ContactPerson> readByNaturalKey(Connection conn, List<ContactPerson> chunk) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        for (ContactPerson person : chunk) {
+            if (naturalKey(person) != null) {
+                params.add(person.getName());
+                params.add(person.getCellphone());
+            }
+        }
+        if (params.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        String selectSQL = SELECT_CONTACTS + " WHERE (name, cellphone) IN ("
+                + String.join(", ", Collections.nCopies(params.size() / 2, "(?, ?)")) + ")";
+        Map<Object, ContactPerson> rows = new HashMap<>();
+        for (ContactPerson row : readRows(conn, selectSQL, params)) {
+            rows.put(naturalKey(row), row);
+        }
+        return rows;
+    }
+
+    private Map<Object, ContactPerson> readById(Connection conn, List<ContactPerson> chunk) throws SQLException {
+        List<Object> ids = new ArrayList<>();
+        for (ContactPerson person : chunk) {
+            ids.add(person.getId());
+        }
+        String selectSQL = SELECT_CONTACTS + " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        Map<Object, ContactPerson> rows = new HashMap<>();
+        for (ContactPerson row : readRows(conn, selectSQL, ids)) {
+            rows.put(row.getId(), row);
+        }
+        return rows;
+    }
+
+    private List<ContactPerson> readRows(Connection conn, String sql, List<Object> params) throws SQLException {
+        List<ContactPerson> rows = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                ContactPersonMapper mapper = new ContactPersonMapper(resultSet);
+                while (resultSet.next()) {
+                    rows.add(mapper.map(resultSet));
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Compares the key columns the way their utf8mb4_0900_ai_ci collation does: case and accents are ignored,
+    // so "Jose" with or without an accent, in any case, is one key, as it is to the unique index.
+    private static Object naturalKey(ContactPerson person) {
+        if (person.getName() == null || person.getCellphone() == null) {
+            return null;
+        }
+        return List.of(KEY_COLLATOR.getCollationKey(person.getName()), KEY_COLLATOR.getCollationKey(person.getCellphone()));
+    }
+
+    // A Collator that compares strings like the utf8mb4_0900_ai_ci columns, ignoring case and accents. Collator
+    // methods synchronize, so threads that compare a lot should each have their own.
+    static Collator newKeyCollator() {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+        return collator;
+    }
+
+    // Checked once per DAO: without the unique key every upsert would be a plain insert
+    private void requireNaturalKey(Connection conn) throws SQLException {
+        if (naturalKeyChecked) {
+            return;
+        }
+        String lookupSQL = "SELECT 1 FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'ContactPerson' AND INDEX_NAME = 'uk_contact_natural_key'";
+        try (Statement stmt = conn.createStatement();
+             ResultSet resultSet = stmt.executeQuery(lookupSQL)) {
+            if (!resultSet.next()) {
+                throw new IllegalStateException("ContactPerson has no unique key uk_contact_natural_key on (name, cellphone); " +
+                        "remove duplicate (name, cellphone) rows and call createContactTable()");
+            }
+        }
+        naturalKeyChecked = true;
+    }
+
+    // Lets MySQL parse and insert a whole CSV file (comma separated, optionally double-quoted, LF or CRLF line
+    // ends as found on the header line, one header line) in one statement. columns names the file's columns in order; "id" columns are skipped
+    // and empty fields become NULL. Needs LOAD_LOCAL_INFILE_PATH on the client and local_infile=ON on the server.
+    // Rows are not validated on the client; the server's row count is returned.
+    public long loadContactsFromCsv(Path csvFile, List<String> columns) {
+        StringBuilder variables = new StringBuilder();
+        StringBuilder assignments = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            variables.append(i == 0 ? "" : ", ").append("@c").append(i);
+            if (column.equals("id")) {
+                continue;
+            }
+            checkColumn(column);
+            assignments.append(assignments.length() == 0 ? " SET " : ", ")
+                    .append(column).append(" = NULLIF(@c").append(i).append(", '')");
+        }
+        String file = csvFile.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'");
+        String lineEnd;
+        try {
+            lineEnd = endsLinesWithCrLf(csvFile) ? "\\r\\n" : "\\n";
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        String loadSQL = "LOAD DATA LOCAL INFILE '" + file + "' INTO TABLE ContactPerson CHARACTER SET utf8mb4 " +
+                "FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '' " +
+                "LINES TERMINATED BY '" + lineEnd + "' IGNORE 1 LINES (" + variables + ")" + assignments;
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            long rows = stmt.executeLargeUpdate(loadSQL);
+            metrics.recordRows("loadContactsFromCsv", 0, rows);
+            return rows;
+        } catch (SQLException e) {
+            metrics.recordError("loadContactsFromCsv");
+            throw new RuntimeException(e);
+        } finally {
+            metrics.recordCall("loadContactsFromCsv", System.nanoTime() - start);
+        }
+    }
+
+    // LOAD DATA splits lines on exactly the terminator it is given: a CRLF file loaded with '\n' would keep a
+    // '\r' at the end of its last column
+    private static boolean endsLinesWithCrLf(Path file) throws IOException {
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file.toFile()))) {
+            int previous = -1;
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                previous = b;
+            }
+            return previous == '\r';
+        }
+    }
+
+    void updateEmails() {
+        updateEmails(0, null);
+    }
+
+    // Update mails in committed chunks; pass a previous run's last processed id to resume after a crash
+    public BulkUpdateProgress updateEmails(int afterId, Consumer<BulkUpdateProgress> listener) {
+        return bulkUpdate("mail", List.of("name"),
+                contact -> contact.getName().replace(' ', '_') + "@edu.eg", afterId, listener);
     }
 
+    // Same result as updateEmails(), computed by MySQL without moving rows to the client
+    public BulkUpdateProgress updateEmailsInDatabase(int afterId, Consumer<BulkUpdateProgress> listener) {
+        return bulkUpdateInDatabase("mail = CONCAT(REPLACE(name, ' ', '_'), '@edu.eg')", afterId, listener);
+    }
+
+    public BulkUpdateProgress bulkUpdate(String column, Function<ContactPerson, ?> transform,
+                                         int afterId, Consumer<BulkUpdateProgress> listener) {
+        return bulkUpdate(column, COLUMNS, transform, afterId, listener);
+    }
+
+    // Streams rows in id order on one connection and writes the new values in chunks of batchSize on another,
+    // committing every chunk so locks and memory stay bounded. Only id and readColumns are read for the transform.
+    public BulkUpdateProgress bulkUpdate(String column, List<String> readColumns, Function<ContactPerson, ?> transform,
+                                         int afterId, Consumer<BulkUpdateProgress> listener) {
+        checkColumn(column);
+        BulkUpdateProgress progress = new BulkUpdateProgress(batchSize, afterId);
+        List<String> selected = new ArrayList<>(List.of("id"));
+        for (String readColumn : readColumns) {
+            if (!readColumn.equals("id")) {
+                selected.add(readColumn);
+            }
+        }
+        String selectSQL = "SELECT " + selectColumns(selected) + " FROM ContactPerson WHERE id > ? ORDER BY id";
+        String updateSQL = "UPDATE ContactPerson SET " + column + " = ? WHERE id = ?";
+        long start = System.nanoTime();
+        try (Stream<ContactPerson> contacts = streamQuery("bulkUpdate.read", selectSQL, afterId);
+             Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(updateSQL)) {
+            conn.setAutoCommit(false);
+            try {
+                Iterator<ContactPerson> iterator = contacts.iterator();
+                int pending = 0;
+                int lastId = afterId;
+                while (iterator.hasNext()) {
+                    ContactPerson contact = iterator.next();
+                    pstmt.setObject(1, transform.apply(contact));
+                    pstmt.setInt(2, contact.getId());
+                    pstmt.addBatch();
+                    lastId = contact.getId();
+                    if (++pending == batchSize) {
+                        metrics.recordBatch("bulkUpdate", pending);
+                        pstmt.executeBatch();
+                        commitChunk(conn, progress, pending, lastId, listener);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    metrics.recordBatch("bulkUpdate", pending);
+                    pstmt.executeBatch();
+                    commitChunk(conn, progress, pending, lastId, listener);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            metrics.recordError("bulkUpdate");
+            throw new RuntimeException(e);
+        } finally {
+            metrics.recordCall("bulkUpdate", System.nanoTime() - start);
+            metrics.recordRows("bulkUpdate", 0, progress.getRowsUpdated());
+        }
+        return progress;
+    }
+
+    // Runs "UPDATE ContactPerson SET <setClause>" over consecutive id ranges of batchSize, one commit per range.
+    // setClause is inserted into the SQL as is and must not contain user input.
+    public BulkUpdateProgress bulkUpdateInDatabase(String setClause, int afterId, Consumer<BulkUpdateProgress> listener) {
+        BulkUpdateProgress progress = new BulkUpdateProgress(batchSize, afterId);
+        String updateSQL = "UPDATE ContactPerson SET " + setClause + " WHERE id > ? AND id <= ?";
+        long start = System.nanoTime();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             PreparedStatement pstmt = conn.prepareStatement(updateSQL)) {
+            int maxId;
+            try (ResultSet resultSet = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM ContactPerson")) {
+                resultSet.next();
+                maxId = resultSet.getInt(1);
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (int low = afterId; low < maxId; low += batchSize) {
+                    int high = (int) Math.min((long) low + batchSize, maxId);
+                    pstmt.setInt(1, low);
+                    pstmt.setInt(2, high);
+                    int rows = pstmt.executeUpdate();
+                    metrics.recordBatch("bulkUpdateInDatabase", rows);
+                    commitChunk(conn, progress, rows, high, listener);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            metrics.recordError("bulkUpdateInDatabase");
+            throw new RuntimeException(e);
+        } finally {
+            metrics.recordCall("bulkUpdateInDatabase", System.nanoTime() - start);
+            metrics.recordRows("bulkUpdateInDatabase", 0, progress.getRowsUpdated());
+        }
+        return progress;
+    }
+
+    private void commitChunk(Connection conn, BulkUpdateProgress progress, int rows, int lastId,
+                             Consumer<BulkUpdateProgress> listener) throws SQLException {
+        conn.commit();
+        progress.recordChunk(rows, lastId);
+        if (listener != null) {
+            listener.accept(progress);
+        }
+    }
+
+    private static void checkColumn(String column) {
+        if (!COLUMNS.contains(column) || column.equals("id")) {
+            throw new IllegalArgumentException("Not an updatable ContactPerson column: " + column);
+        }
+    }
+
+    // One thread's writes, for read-your-writes. The write connection may be closed on another thread, e.g.
+    // when a stream is closed elsewhere, so the fields are safe to update from any thread.
+    private static final class WriteWindow {
+        private final AtomicInteger writesInProgress = new AtomicInteger();
+        private volatile long lastWriteNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+
+        private boolean allowsReplicaRead(long readYourWritesNanos) {
+            return writesInProgress.get() == 0 && System.nanoTime() - lastWriteNanos >= readYourWritesNanos;
+        }
+    }
 }
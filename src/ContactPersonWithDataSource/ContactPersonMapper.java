@@ -0,0 +1,103 @@
+package ContactPersonWithDataSource;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+// Maps rows of one ResultSet to ContactPerson. Column positions are resolved once from the metadata,
+// so each row is read by index instead of by a case-insensitive label lookup per column.
+// Columns missing from the ResultSet are left unset, which lets queries select only what they need.
+public class ContactPersonMapper {
+    private int id;
+    private int name;
+    private int nickname;
+    private int address;
+    private int homePhone;
+    private int workPhone;
+    private int cellphone;
+    private int mail;
+    private int birthdate;
+    private int website;
+    private int profession;
+
+    public ContactPersonMapper(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            switch (metaData.getColumnLabel(i).toLowerCase()) {
+                case "id":
+                    id = i;
+                    break;
+                case "name":
+                    name = i;
+                    break;
+                case "nickname":
+                    nickname = i;
+                    break;
+                case "address":
+                    address = i;
+                    break;
+                case "homephone":
+                    homePhone = i;
+                    break;
+                case "workphone":
+                    workPhone = i;
+                    break;
+                case "cellphone":
+                    cellphone = i;
+                    break;
+                case "mail":
+                    mail = i;
+                    break;
+                case "birthdate":
+                    birthdate = i;
+                    break;
+                case "website":
+                    website = i;
+                    break;
+                case "profession":
+                    profession = i;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public ContactPerson map(ResultSet resultSet) throws SQLException {
+        ContactPerson result = new ContactPerson();
+        if (id > 0) {
+            result.setId(resultSet.getInt(id));
+        }
+        if (name > 0) {
+            result.setName(resultSet.getString(name));
+        }
+        if (nickname > 0) {
+            result.setNickName(resultSet.getString(nickname));
+        }
+        if (address > 0) {
+            result.setAddress(resultSet.getString(address));
+        }
+        if (homePhone > 0) {
+            result.setHomePhone(resultSet.getString(homePhone));
+        }
+        if (workPhone > 0) {
+            result.setWorkPhone(resultSet.getString(workPhone));
+        }
+        if (cellphone > 0) {
+            result.setCellphone(resultSet.getString(cellphone));
+        }
+        if (mail > 0) {
+            result.setMail(resultSet.getString(mail));
+        }
+        if (birthdate > 0) {
+            result.setBirthdate(resultSet.getDate(birthdate));
+        }
+        if (website > 0) {
+            result.setWebsite(resultSet.getString(website));
+        }
+        if (profession > 0) {
+            result.setProfession(resultSet.getString(profession));
+        }
+        return result;
+    }
+}
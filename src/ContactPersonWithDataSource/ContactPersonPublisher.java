@@ -0,0 +1,146 @@
+package ContactPersonWithDataSource;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Publishes the ContactPerson table through streamContacts(). Every subscription opens its own cursor when
+// the first rows are requested and reads only as many rows as the subscriber has requested, so a slow
+// subscriber holds back the cursor instead of buffering rows. Reads and all subscriber signals run on the
+// executor, one task at a time per subscription. Completion, an error or cancel() closes the cursor and
+// returns the connection to the pool; after cancel() that happens as soon as the read in progress, if any,
+// returns, and the rows not yet read are not fetched (see streamContacts()).
+final class ContactPersonPublisher implements Flow.Publisher<ContactPerson> {
+    private final ContactPersonDAO dao;
+    private final Executor executor;
+    private final String[] columns;
+
+    ContactPersonPublisher(ContactPersonDAO dao, Executor executor, String... columns) {
+        this.dao = dao;
+        this.executor = executor;
+        this.columns = columns;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ContactPerson> subscriber) {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new ContactSubscription(subscriber));
+    }
+
+    private final class ContactSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super ContactPerson> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Number of drain requests not yet handled; only the caller that raises it from 0 schedules a drain
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException invalidRequest;
+
+        // Used by the draining task only
+        private Stream<ContactPerson> stream;
+        private Iterator<ContactPerson> rows;
+        private boolean done;
+
+        private ContactSubscription(Flow.Subscriber<? super ContactPerson> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request(" + n + "): demand must be positive");
+            } else {
+                // Demand adds up and saturates at Long.MAX_VALUE, which means unbounded
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Nothing is draining, so this thread may signal
+                    finish();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (invalidRequest != null) {
+                finish();
+                subscriber.onError(invalidRequest);
+                return;
+            }
+            try {
+                while (true) {
+                    long requested = demand.get();
+                    if (requested == 0) {
+                        return;
+                    }
+                    if (rows == null) {
+                        stream = dao.streamContacts(columns);
+                        rows = stream.iterator();
+                    }
+                    long emitted = 0;
+                    while (emitted < requested) {
+                        if (cancelled || invalidRequest != null) {
+                            // Handled by the next pass of run()
+                            return;
+                        }
+                        if (!rows.hasNext()) {
+                            finish();
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(rows.next());
+                        emitted++;
+                    }
+                    if (requested != Long.MAX_VALUE && demand.addAndGet(-emitted) == 0) {
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                finish();
+                subscriber.onError(e);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            rows = null;
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            }
+        }
+    }
+}
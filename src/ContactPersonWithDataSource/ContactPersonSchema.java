@@ -0,0 +1,92 @@
+package ContactPersonWithDataSource;
+
+import java.util.List;
+
+// The ContactPerson schema as the migrations that build it, applied by createContactTable(). Append a new
+// Migration to change the schema, e.g. an index for a lookup by mail:
+//
+//   new Migration(8, "Mail lookup index", Migration.addIndex("ContactPerson", "idx_contact_mail", "INDEX idx_contact_mail (mail)"))
+//
+// Released migrations must stay as they are: SchemaMigrator refuses to run when one no longer matches the
+// checksum recorded for it.
+public final class ContactPersonSchema {
+    public static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "ContactPerson table",
+                    Migration.createTable("ContactPerson", "CREATE TABLE IF NOT EXISTS ContactPerson (" +
+                            "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "name VARCHAR(100) NOT NULL, " +
+                            "nickname VARCHAR(50), " +
+                            "address VARCHAR(200), " +
+                            "homePhone VARCHAR(20), " +
+                            "workPhone VARCHAR(20), " +
+                            "cellphone VARCHAR(20), " +
+                            "mail VARCHAR(100), " +
+                            "birthdate DATE, " +
+                            "website VARCHAR(100), " +
+                            "profession VARCHAR(100))")),
+            // Keyset pages sorted by name seek on (name, id); InnoDB appends the primary key to every secondary
+            // index. The same index serves PREFIX searches.
+            new Migration(2, "Name index for name ordering and prefix search",
+                    Migration.addIndex("ContactPerson", "idx_contact_name", "INDEX idx_contact_name (name)")),
+            // ngram tokens let FULLTEXT searches find substrings, not only whole words
+            new Migration(3, "Ngram full-text index on name",
+                    Migration.addIndex("ContactPerson", "ft_contact_name",
+                            "FULLTEXT INDEX ft_contact_name (name) WITH PARSER ngram")),
+            // Drives ContactSnapshot.refresh() and streamContactsUpdatedSince()
+            new Migration(4, "updated_at column and index",
+                    Migration.addColumn("ContactPerson", "updated_at",
+                            "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)"),
+                    Migration.addIndex("ContactPerson", "idx_contact_updated_at", "INDEX idx_contact_updated_at (updated_at)")),
+            // Natural key that upsertContacts() matches on. It also applies to every other write: once it exists, a
+            // second contact with the same name and cellphone (compared ignoring case and accents) is rejected by
+            // insertContactPerson() and insertContacts(); contacts without a cellphone are not affected. A table that
+            // already holds duplicates keeps working without it, and the index is tried again on every migration
+            // until the duplicates are gone
+            new Migration(5, "Unique natural key (name, cellphone)",
+                    Migration.addIndex("ContactPerson", "uk_contact_natural_key",
+                            "UNIQUE INDEX uk_contact_natural_key (name, cellphone)").optional()),
+            // A row's version goes up only when a value changes, so a no-op UPDATE leaves no trace in the change feed
+            new Migration(6, "Row version",
+                    Migration.addColumn("ContactPerson", "version", "BIGINT NOT NULL DEFAULT 1"),
+                    Migration.createTrigger("ContactPerson", "trg_contact_version", "CREATE TRIGGER trg_contact_version " +
+                            "BEFORE UPDATE ON ContactPerson FOR EACH ROW " +
+                            "IF NOT (NEW.name <=> OLD.name AND NEW.nickname <=> OLD.nickname AND NEW.address <=> OLD.address " +
+                            "AND NEW.homePhone <=> OLD.homePhone AND NEW.workPhone <=> OLD.workPhone " +
+                            "AND NEW.cellphone <=> OLD.cellphone " +
+                            "AND NEW.mail <=> OLD.mail AND NEW.birthdate <=> OLD.birthdate " +
+                            "AND NEW.website <=> OLD.website AND NEW.profession <=> OLD.profession) " +
+                            "THEN SET NEW.version = OLD.version + 1; END IF")),
+            // The chunks a resumable ContactImporter run has committed, each written in the transaction that
+            // inserts its rows; chunk is the byte offset of the chunk's first record in the input file
+            new Migration(7, "Import chunk log",
+                    Migration.createTable("ContactImportChunk", "CREATE TABLE IF NOT EXISTS ContactImportChunk (" +
+                            "import_id VARCHAR(100) NOT NULL, " +
+                            "chunk BIGINT NOT NULL, " +
+                            "imported_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), " +
+                            "PRIMARY KEY (import_id, chunk))")));
+
+    // The outbox and the triggers that fill it, created only with CHANGE_FEED = true since they add a row write
+    // to every change. The triggers run inside the statement that changes the row, so every write path (single and batched
+    // inserts, upserts, bulk updates, LOAD DATA and SQL run by hand) records its changes in the same
+    // transaction without each having to. Turning CHANGE_FEED off again leaves them; drop them to stop recording.
+    public static final List<Migration.Step> CHANGE_FEED = List.of(
+            Migration.createTable("ContactPersonChange", "CREATE TABLE IF NOT EXISTS ContactPersonChange (" +
+                    "seq BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "contact_id INT NOT NULL, " +
+                    "version BIGINT NOT NULL, " +
+                    "operation CHAR(1) NOT NULL, " +
+                    "changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3))"),
+            Migration.createTrigger("ContactPerson", "trg_contact_change_insert", "CREATE TRIGGER trg_contact_change_insert " +
+                    "AFTER INSERT ON ContactPerson FOR EACH ROW " +
+                    "INSERT INTO ContactPersonChange (contact_id, version, operation) VALUES (NEW.id, NEW.version, 'I')"),
+            Migration.createTrigger("ContactPerson", "trg_contact_change_update", "CREATE TRIGGER trg_contact_change_update " +
+                    "AFTER UPDATE ON ContactPerson FOR EACH ROW " +
+                    "IF NEW.version <> OLD.version THEN " +
+                    "INSERT INTO ContactPersonChange (contact_id, version, operation) VALUES (NEW.id, NEW.version, 'U'); END IF"),
+            Migration.createTrigger("ContactPerson", "trg_contact_change_delete", "CREATE TRIGGER trg_contact_change_delete " +
+                    "AFTER DELETE ON ContactPerson FOR EACH ROW " +
+                    "INSERT INTO ContactPersonChange (contact_id, version, operation) VALUES (OLD.id, OLD.version + 1, 'D')"));
+
+    private ContactPersonSchema() {
+    }
+}
@@ -0,0 +1,378 @@
+package ContactPersonWithDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// In-memory contacts stored column by column in primitive arrays instead of one ContactPerson per row.
+// A ContactPerson with its ten Strings and Date takes several hundred bytes; here a row costs the bytes of
+// its values plus a few ints. Every string column starts dictionary-encoded (one char code per row, each
+// distinct value kept once) and switches to packed UTF-8 bytes once it has more than MAX_DICTIONARY_SIZE
+// distinct values, so low-cardinality columns such as profession stay dictionaries. birthdate is an epoch
+// day int. Rows are read through Row views, which decode one value at a time and can be reused.
+//
+// Rows must be added in increasing id order, as streamContactsInRange() returns them, so ids can be
+// binary searched. The table is not thread-safe while rows are added; once loaded it can be read by any
+// number of threads, each with its own Row.
+public class ContactPersonTable {
+    private static final String[] STRING_COLUMNS = {"name", "nickname", "address", "homePhone", "workPhone",
+            "cellphone", "mail", "website", "profession"};
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    // Codes are chars, and code 0 is null
+    private static final int MAX_DICTIONARY_SIZE = Character.MAX_VALUE;
+
+    private int size;
+    private int[] ids;
+    private int[] birthdates;
+    private final StringColumn[] columns = new StringColumn[STRING_COLUMNS.length];
+
+    public ContactPersonTable() {
+        this(1024);
+    }
+
+    public ContactPersonTable(int initialCapacity) {
+        ids = new int[Math.max(initialCapacity, 16)];
+        birthdates = new int[ids.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new DictionaryColumn(ids.length);
+        }
+    }
+
+    // The whole ContactPerson table, read through one cursor
+    public static ContactPersonTable load(ContactPersonDAO dao) {
+        ContactPersonTable table = new ContactPersonTable();
+        try (Stream<ContactPerson> contacts = dao.streamContactsInRange(0, Integer.MAX_VALUE)) {
+            contacts.forEach(table::add);
+        }
+        table.trimToSize();
+        return table;
+    }
+
+    public int add(ContactPerson contact) {
+        if (size > 0 && contact.getId() <= ids[size - 1]) {
+            throw new IllegalArgumentException("Rows must be added in increasing id order, got "
+                    + contact.getId() + " after " + ids[size - 1]);
+        }
+        if (size == ids.length) {
+            grow(Math.max(16, size * 2));
+        }
+        ids[size] = contact.getId();
+        birthdates[size] = contact.getBirthdate() == null ? NO_DATE : (int) toLocalDate(contact.getBirthdate()).toEpochDay();
+        String[] values = {contact.getName(), contact.getNickName(), contact.getAddress(), contact.getHomePhone(),
+                contact.getWorkPhone(), contact.getCellphone(), contact.getMail(), contact.getWebsite(),
+                contact.getProfession()};
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].add(size, values[i])) {
+                columns[i] = ((DictionaryColumn) columns[i]).toBytes(size, ids.length);
+                columns[i].add(size, values[i]);
+            }
+        }
+        return size++;
+    }
+
+    // Releases the spare capacity left by growing, and the lookup maps used while adding rows
+    public void trimToSize() {
+        grow(size);
+        for (StringColumn column : columns) {
+            column.trim();
+        }
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        birthdates = Arrays.copyOf(birthdates, capacity);
+        for (StringColumn column : columns) {
+            column.resize(capacity);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Row of the given id, or -1 when the table does not have it
+    public int indexOf(int id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        return row < 0 ? -1 : row;
+    }
+
+    // A new view of the given row; move it with moveTo() to read other rows without allocating
+    public Row row(int row) {
+        return new Row(row);
+    }
+
+    // Calls the action with the same Row moved to each row in turn, so keep no reference to it
+    public void forEach(Consumer<Row> action) {
+        Row view = new Row(0);
+        for (int row = 0; row < size; row++) {
+            view.moveTo(row);
+            action.accept(view);
+        }
+    }
+
+    // Bytes held by the arrays of the table, not counting object headers
+    public long getDataBytes() {
+        long bytes = 4L * ids.length + 4L * birthdates.length;
+        for (StringColumn column : columns) {
+            bytes += column.getDataBytes();
+        }
+        return bytes;
+    }
+
+    // Encoding and distinct value count of each string column
+    public String describeColumns() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            description.append(String.format("  %-10s %s%n", STRING_COLUMNS[i], columns[i]));
+        }
+        return description.toString();
+    }
+
+    private static LocalDate toLocalDate(java.util.Date date) {
+        return date instanceof Date ? ((Date) date).toLocalDate() : new Date(date.getTime()).toLocalDate();
+    }
+
+    // Flyweight over one row; each getter decodes only its own column
+    public final class Row {
+        private int row;
+
+        private Row(int row) {
+            this.row = row;
+        }
+
+        public Row moveTo(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            }
+            this.row = row;
+            return this;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getId() {
+            return ids[row];
+        }
+
+        public String getName() {
+            return columns[0].get(row);
+        }
+
+        public String getNickName() {
+            return columns[1].get(row);
+        }
+
+        public String getAddress() {
+            return columns[2].get(row);
+        }
+
+        public String getHomePhone() {
+            return columns[3].get(row);
+        }
+
+        public String getWorkPhone() {
+            return columns[4].get(row);
+        }
+
+        public String getCellphone() {
+            return columns[5].get(row);
+        }
+
+        public String getMail() {
+            return columns[6].get(row);
+        }
+
+        public String getWebsite() {
+            return columns[7].get(row);
+        }
+
+        public String getProfession() {
+            return columns[8].get(row);
+        }
+
+        // The epoch day of the birthdate, or Integer.MIN_VALUE when there is none; no object is created
+        public int getBirthdateEpochDay() {
+            return birthdates[row];
+        }
+
+        public Date getBirthdate() {
+            return birthdates[row] == NO_DATE ? null : Date.valueOf(LocalDate.ofEpochDay(birthdates[row]));
+        }
+
+        // A standalone copy of the row
+        public ContactPerson toContactPerson() {
+            ContactPerson contact = new ContactPerson();
+            contact.setId(getId());
+            contact.setName(getName());
+            contact.setNickName(getNickName());
+            contact.setAddress(getAddress());
+            contact.setHomePhone(getHomePhone());
+            contact.setWorkPhone(getWorkPhone());
+            contact.setCellphone(getCellphone());
+            contact.setMail(getMail());
+            contact.setBirthdate(getBirthdate());
+            contact.setWebsite(getWebsite());
+            contact.setProfession(getProfession());
+            return contact;
+        }
+    }
+
+    private abstract static class StringColumn {
+        // false when the column cannot take the value and has to be converted first
+        abstract boolean add(int row, String value);
+
+        abstract String get(int row);
+
+        abstract void resize(int capacity);
+
+        abstract void trim();
+
+        abstract long getDataBytes();
+    }
+
+    // One char code per row; decoded values are shared by all rows that have them
+    private static final class DictionaryColumn extends StringColumn {
+        // Value to code, while rows are being added; rebuilt from values if rows are added after trim()
+        private Map<String, Character> codes = new HashMap<>();
+        private String[] values = new String[16];
+        private int distinct;
+        private char[] rows;
+
+        DictionaryColumn(int capacity) {
+            rows = new char[capacity];
+        }
+
+        @Override
+        boolean add(int row, String value) {
+            if (value == null) {
+                rows[row] = 0;
+                return true;
+            }
+            if (codes == null) {
+                codes = new HashMap<>();
+                for (int code = 1; code <= distinct; code++) {
+                    codes.put(values[code], (char) code);
+                }
+            }
+            Character code = codes.get(value);
+            if (code == null) {
+                if (distinct == MAX_DICTIONARY_SIZE) {
+                    return false;
+                }
+                code = (char) ++distinct;
+                codes.put(value, code);
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[code] = value;
+            }
+            rows[row] = code;
+            return true;
+        }
+
+        @Override
+        String get(int row) {
+            return values[rows[row]];
+        }
+
+        @Override
+        void resize(int capacity) {
+            rows = Arrays.copyOf(rows, capacity);
+        }
+
+        @Override
+        void trim() {
+            codes = null;
+            values = Arrays.copyOf(values, distinct + 1);
+        }
+
+        // Distinct strings are counted at roughly their UTF-16 size
+        @Override
+        long getDataBytes() {
+            long bytes = 2L * rows.length + 4L * values.length;
+            for (int code = 1; code <= distinct; code++) {
+                bytes += 2L * values[code].length();
+            }
+            return bytes;
+        }
+
+        ByteColumn toBytes(int rowCount, int capacity) {
+            ByteColumn column = new ByteColumn(capacity);
+            for (int row = 0; row < rowCount; row++) {
+                column.add(row, get(row));
+            }
+            return column;
+        }
+
+        @Override
+        public String toString() {
+            return "dictionary, " + distinct + " distinct values";
+        }
+    }
+
+    // The UTF-8 bytes of all values back to back; row i spans offsets[i] to offsets[i + 1]
+    private static final class ByteColumn extends StringColumn {
+        private byte[] bytes = new byte[1024];
+        private int used;
+        private int[] offsets;
+        private final BitSet nulls = new BitSet();
+
+        ByteColumn(int capacity) {
+            offsets = new int[capacity + 1];
+        }
+
+        @Override
+        boolean add(int row, String value) {
+            int start = offsets[row];
+            if (value == null) {
+                nulls.set(row);
+                offsets[row + 1] = start;
+                return true;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (start + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, start + encoded.length));
+            }
+            System.arraycopy(encoded, 0, bytes, start, encoded.length);
+            offsets[row + 1] = start + encoded.length;
+            used = offsets[row + 1];
+            return true;
+        }
+
+        @Override
+        String get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return new String(bytes, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void resize(int capacity) {
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+
+        @Override
+        void trim() {
+            bytes = Arrays.copyOf(bytes, used);
+        }
+
+        @Override
+        long getDataBytes() {
+            return bytes.length + 4L * offsets.length + nulls.size() / 8;
+        }
+
+        @Override
+        public String toString() {
+            return "UTF-8 bytes";
+        }
+    }
+}
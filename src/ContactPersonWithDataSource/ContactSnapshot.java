@@ -0,0 +1,640 @@
+package ContactPersonWithDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Read-only copy of the ContactPerson table in a columnar file that is memory-mapped on open, so a warm start
+// reads a local file instead of scanning the table. Only the ids are decoded up front; every other value is
+// decoded from the mapping when it is asked for, and a string column builds its row index on first use.
+//
+// File layout: magic, row count (int), watermark (long) and footer offset (long), then row groups of
+// GROUP_ROWS rows (the last may be shorter), then the footer. A row group holds one block per column in
+// COLUMNS order, each an encoding byte followed by the data:
+//   id          - varint deltas between consecutive ids, the first from 0 (rows are in id order)
+//   birthdate   - one int per row, the epoch day or Integer.MIN_VALUE for null
+//   strings     - PLAIN: one VarInts string per row
+//                 DICTIONARY: varint entry count, the entries as VarInts strings, then one code per row of
+//                 1 or 2 bytes (the code width byte comes first); code 0 is null, code i is entry i - 1
+// The footer holds the row group count (int) and, per group, its offset (long) and the byte length of each
+// of its blocks (int). The writer streams every group to the file as it fills and writes the footer and the
+// header last, and each group is mapped on its own, so neither side holds more than a group at once.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.ContactSnapshot <file>
+//   creates the snapshot, or refreshes it when the file already exists
+public class ContactSnapshot {
+    private static final List<String> COLUMNS = List.of("id", "name", "nickname", "address", "homePhone",
+            "workPhone", "cellphone", "mail", "birthdate", "website", "profession");
+    private static final byte[] MAGIC = {'C', 'P', 'S', '2'};
+    private static final int HEADER_SIZE = MAGIC.length + 4 + 8 + 8;
+    private static final int GROUP_ROWS = 1 << 16;
+    private static final byte PLAIN = 0;
+    private static final byte DICTIONARY = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    // A string column is dictionary-encoded while it has at most this many distinct values
+    private static final int MAX_DICTIONARY_SIZE = 0xFFFF;
+    // updated_at is set when a statement runs, not when its transaction commits, so a refresh re-reads
+    // this much before the previous watermark; re-reading a row is harmless
+    private static final long REFRESH_OVERLAP_MILLIS = 5_000;
+
+    private final Path file;
+    private final long fileSize;
+    private final long watermark;
+    private final int[] ids;
+    // Indexed by row group, then by column
+    private final Column[][] columns;
+
+    private ContactSnapshot(Path file) throws IOException {
+        this.file = file;
+        int rows;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            byte[] magic = new byte[MAGIC.length];
+            // The mappings stay valid after the channel is closed
+            ByteBuffer header = fileSize < HEADER_SIZE ? null : channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header != null) {
+                header.get(0, magic);
+            }
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a contact snapshot, or one written by an older version: " + file);
+            }
+            rows = header.getInt(MAGIC.length);
+            watermark = header.getLong(MAGIC.length + 4);
+            long footerOffset = header.getLong(MAGIC.length + 12);
+
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, fileSize - footerOffset);
+            columns = new Column[footer.getInt()][];
+            for (int group = 0; group < columns.length; group++) {
+                long offset = footer.getLong();
+                int[] lengths = new int[COLUMNS.size()];
+                long groupSize = 0;
+                for (int i = 0; i < lengths.length; i++) {
+                    lengths[i] = footer.getInt();
+                    groupSize += lengths[i];
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, groupSize);
+                int groupRows = Math.min(GROUP_ROWS, rows - group * GROUP_ROWS);
+                columns[group] = new Column[lengths.length];
+                int position = 0;
+                for (int i = 0; i < lengths.length; i++) {
+                    columns[group][i] = new Column(buffer, buffer.get(position), position + 1, lengths[i] - 1, groupRows);
+                    position += lengths[i];
+                }
+            }
+        }
+
+        ids = new int[rows];
+        for (int group = 0; group < columns.length; group++) {
+            ByteBuffer in = columns[group][0].slice(columns[group][0].start);
+            int id = 0;
+            for (int row = group * GROUP_ROWS; row < Math.min(rows, (group + 1) * GROUP_ROWS); row++) {
+                id += (int) VarInts.readUnsigned(in);
+                ids[row] = id;
+            }
+        }
+    }
+
+    public static ContactSnapshot open(Path file) throws IOException {
+        return new ContactSnapshot(file);
+    }
+
+    // Scans the whole table into a new snapshot file. Like refresh(), it reads from the primary: a lagging
+    // replica could be missing rows older than the watermark, which no later refresh would pick up.
+    public static ContactSnapshot create(ContactPersonDAO dao, Path file) throws IOException {
+        dao.setReadFromPrimary(true);
+        try {
+            long watermark = readDatabaseTime(dao);
+            try (Writer writer = new Writer(file, watermark);
+                 Stream<ContactPerson> contacts = dao.streamContactsInRange(0, Integer.MAX_VALUE)) {
+                for (Iterator<ContactPerson> iterator = contacts.iterator(); iterator.hasNext(); ) {
+                    writer.add(iterator.next());
+                }
+                writer.finish();
+            }
+        } finally {
+            dao.setReadFromPrimary(false);
+        }
+        return open(file);
+    }
+
+    // Writes a new snapshot to target with the rows changed in the database since this one was taken, reading
+    // only those rows. Deleted rows are found by comparing row counts; only when they differ are the ids of
+    // the table read to find out which rows are gone. target may be this snapshot's own file.
+    public ContactSnapshot refresh(ContactPersonDAO dao, Path target) throws IOException {
+        dao.setReadFromPrimary(true);
+        try {
+            return refreshFromPrimary(dao, target);
+        } finally {
+            dao.setReadFromPrimary(false);
+        }
+    }
+
+    private ContactSnapshot refreshFromPrimary(ContactPersonDAO dao, Path target) throws IOException {
+        long newWatermark = readDatabaseTime(dao);
+        // Counted before the changes are read, so every insert the count sees is also in the changes
+        long count = dao.countContacts();
+        ContactPerson[] changed;
+        try (Stream<ContactPerson> contacts = dao.streamContactsUpdatedSince(watermark - REFRESH_OVERLAP_MILLIS)) {
+            changed = contacts.toArray(ContactPerson[]::new);
+        }
+
+        long expected = ids.length;
+        for (ContactPerson contact : changed) {
+            if (indexOf(contact.getId()) < 0) {
+                expected++;
+            }
+        }
+        int[] liveIds = null;
+        if (expected != count) {
+            try (Stream<ContactPerson> contacts = dao.streamContactsInRange(0, Integer.MAX_VALUE, "id")) {
+                liveIds = contacts.mapToInt(ContactPerson::getId).toArray();
+            }
+        }
+
+        // Merges the old rows with the changed ones, both in id order; a changed row replaces the old one.
+        // Written beside the target and moved over it, so readers of the old mapping are not disturbed.
+        try (Writer writer = new Writer(target, newWatermark)) {
+            int row = 0;
+            for (ContactPerson contact : changed) {
+                for (; row < ids.length && ids[row] < contact.getId(); row++) {
+                    addIfLive(writer, row, liveIds);
+                }
+                if (row < ids.length && ids[row] == contact.getId()) {
+                    row++;
+                }
+                writer.add(contact);
+            }
+            for (; row < ids.length; row++) {
+                addIfLive(writer, row, liveIds);
+            }
+            writer.finish();
+        }
+        return open(target);
+    }
+
+    private void addIfLive(Writer writer, int row, int[] liveIds) throws IOException {
+        if (liveIds == null || Arrays.binarySearch(liveIds, ids[row]) >= 0) {
+            writer.add(getContact(row));
+        }
+    }
+
+    private static long readDatabaseTime(ContactPersonDAO dao) throws IOException {
+        long now = dao.getDatabaseTimeMillis();
+        if (now < 0) {
+            throw new IOException("Could not read the database time");
+        }
+        return now;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    // Database time the snapshot was taken at; rows changed after it are not in the snapshot
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    // Row of the given id, or -1 when the snapshot does not have it
+    public int indexOf(int id) {
+        int row = Arrays.binarySearch(ids, id);
+        return row < 0 ? -1 : row;
+    }
+
+    public ContactPerson getContactById(int id, String... columns) {
+        int row = indexOf(id);
+        return row < 0 ? null : getContact(row, columns);
+    }
+
+    // Pass column names to decode only those; the other ContactPerson fields are left unset
+    public ContactPerson getContact(int row, String... columns) {
+        ContactPerson contact = new ContactPerson();
+        contact.setId(ids[row]);
+        if (columns.length == 0) {
+            for (int i = 1; i < COLUMNS.size(); i++) {
+                setField(contact, i, row);
+            }
+        } else {
+            for (String column : columns) {
+                setField(contact, columnIndex(column), row);
+            }
+        }
+        return contact;
+    }
+
+    // One column of one row: a String, a java.sql.Date for birthdate, or an Integer for id
+    public Object getValue(int row, String columnName) {
+        int index = columnIndex(columnName);
+        if (index == 0) {
+            return ids[row];
+        }
+        Column column = columns[row / GROUP_ROWS][index];
+        if (COLUMNS.get(index).equals("birthdate")) {
+            int epochDay = column.buffer.getInt(column.start + row % GROUP_ROWS * 4);
+            return epochDay == NO_DATE ? null : Date.valueOf(LocalDate.ofEpochDay(epochDay));
+        }
+        return column.getString(row % GROUP_ROWS);
+    }
+
+    public Stream<ContactPerson> stream(String... columns) {
+        if (columns.length > 0) {
+            Arrays.stream(columns).forEach(ContactSnapshot::columnIndex);
+        }
+        return IntStream.range(0, ids.length).mapToObj(row -> getContact(row, columns));
+    }
+
+    private void setField(ContactPerson contact, int index, int row) {
+        Object value = getValue(row, COLUMNS.get(index));
+        switch (COLUMNS.get(index)) {
+            case "id":
+                break;
+            case "name":
+                contact.setName((String) value);
+                break;
+            case "nickname":
+                contact.setNickName((String) value);
+                break;
+            case "address":
+                contact.setAddress((String) value);
+                break;
+            case "homePhone":
+                contact.setHomePhone((String) value);
+                break;
+            case "workPhone":
+                contact.setWorkPhone((String) value);
+                break;
+            case "cellphone":
+                contact.setCellphone((String) value);
+                break;
+            case "mail":
+                contact.setMail((String) value);
+                break;
+            case "birthdate":
+                contact.setBirthdate((Date) value);
+                break;
+            case "website":
+                contact.setWebsite((String) value);
+                break;
+            default:
+                contact.setProfession((String) value);
+        }
+    }
+
+    private static int columnIndex(String column) {
+        int index = COLUMNS.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Not a ContactPerson column: " + column);
+        }
+        return index;
+    }
+
+    // Bytes of the data of each column over all row groups, and its encoding, for inspecting what the
+    // encodings save
+    public Map<String, String> describeColumns() {
+        Map<String, String> description = new LinkedHashMap<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            long length = 0;
+            int dictionaryGroups = 0;
+            for (Column[] group : columns) {
+                length += group[i].length;
+                dictionaryGroups += group[i].encoding == DICTIONARY ? 1 : 0;
+            }
+            String encoding = i == 0 ? "varint deltas" : COLUMNS.get(i).equals("birthdate") ? "epoch days"
+                    : dictionaryGroups == 0 ? "plain" : dictionaryGroups == columns.length ? "dictionary"
+                    : "dictionary in " + dictionaryGroups + " of " + columns.length + " row groups";
+            description.put(COLUMNS.get(i), length + " bytes, " + encoding);
+        }
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ContactSnapshot[file=%s, rows=%d, bytes=%d, watermark=%d]",
+                file, ids.length, fileSize, watermark);
+    }
+
+    // Decoding state of one column block of one row group. The row index of a PLAIN column and the entries of a
+    // DICTIONARY column are built on first use; two threads may both build them, and either result is correct.
+    private static final class Column {
+        private final MappedByteBuffer buffer;
+        private final byte encoding;
+        private final int start;
+        private final int length;
+        private final int rows;
+        private volatile int[] offsets;
+        private volatile String[] dictionary;
+        private int codeWidth;
+        private int codesStart;
+
+        Column(MappedByteBuffer buffer, byte encoding, int start, int length, int rows) {
+            this.buffer = buffer;
+            this.encoding = encoding;
+            this.start = start;
+            this.length = length;
+            this.rows = rows;
+        }
+
+        // A private cursor on the shared mapping; relative reads on the mapping itself would race between threads
+        private ByteBuffer slice(int position) {
+            return buffer.duplicate().position(position);
+        }
+
+        String getString(int row) {
+            if (encoding == PLAIN) {
+                int[] index = offsets;
+                if (index == null) {
+                    index = buildOffsets();
+                    offsets = index;
+                }
+                return VarInts.readString(slice(index[row]));
+            }
+            String[] entries = dictionary;
+            if (entries == null) {
+                entries = readDictionary();
+            }
+            int position = codesStart + row * codeWidth;
+            int code = codeWidth == 1 ? buffer.get(position) & 0xFF : buffer.getShort(position) & 0xFFFF;
+            return code == 0 ? null : entries[code - 1];
+        }
+
+        private int[] buildOffsets() {
+            int[] index = new int[rows];
+            ByteBuffer in = slice(start);
+            for (int row = 0; row < rows; row++) {
+                index[row] = in.position();
+                int length = (int) VarInts.readUnsigned(in) - 1;
+                if (length > 0) {
+                    in.position(in.position() + length);
+                }
+            }
+            return index;
+        }
+
+        // codeWidth and codesStart are written before the volatile dictionary, which publishes them
+        private String[] readDictionary() {
+            ByteBuffer in = slice(start);
+            String[] entries = new String[(int) VarInts.readUnsigned(in)];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = VarInts.readString(in);
+            }
+            codeWidth = in.get();
+            codesStart = in.position();
+            dictionary = entries;
+            return entries;
+        }
+    }
+
+    // Collects rows in id order column by column, one row group at a time, and streams each full group to a
+    // file beside the target; finish() adds the footer and the header and moves the file over the target.
+    // Every string column is kept plain and, until it has too many distinct values in the group, as dictionary
+    // codes too; the smaller of the two is written.
+    private static final class Writer implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final long watermark;
+        private final ByteArrayOutputStream idColumn = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream birthdateColumn = new ByteArrayOutputStream();
+        private final StringColumnWriter[] stringColumns = new StringColumnWriter[COLUMNS.size()];
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+        private final List<Function<ContactPerson, String>> getters = List.of(ContactPerson::getName,
+                ContactPerson::getNickName, ContactPerson::getAddress, ContactPerson::getHomePhone,
+                ContactPerson::getWorkPhone, ContactPerson::getCellphone, ContactPerson::getMail,
+                ContactPerson::getWebsite, ContactPerson::getProfession);
+        private int rows;
+        private int groupRows;
+        private int groups;
+        private int lastId = Integer.MIN_VALUE;
+        private boolean finished;
+
+        Writer(Path file, long watermark) throws IOException {
+            this.file = file;
+            this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.watermark = watermark;
+            channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            channel.position(HEADER_SIZE);
+            newGroup();
+        }
+
+        private void newGroup() {
+            idColumn.reset();
+            birthdateColumn.reset();
+            for (int i = 1; i < COLUMNS.size(); i++) {
+                if (!COLUMNS.get(i).equals("birthdate")) {
+                    stringColumns[i] = new StringColumnWriter();
+                }
+            }
+            groupRows = 0;
+        }
+
+        void add(ContactPerson contact) throws IOException {
+            if (contact.getId() <= lastId || contact.getId() <= 0) {
+                throw new IllegalStateException("Snapshot rows must have positive ids in increasing order, got "
+                        + contact.getId() + " after " + lastId);
+            }
+            VarInts.writeUnsigned(idColumn, contact.getId() - (groupRows == 0 ? 0L : lastId));
+            Iterator<Function<ContactPerson, String>> getter = getters.iterator();
+            for (int i = 1; i < COLUMNS.size(); i++) {
+                if (stringColumns[i] != null) {
+                    stringColumns[i].add(getter.next().apply(contact));
+                }
+            }
+            int epochDay = contact.getBirthdate() == null ? NO_DATE : (int) toLocalDate(contact.getBirthdate()).toEpochDay();
+            writeInt(birthdateColumn, epochDay);
+            lastId = contact.getId();
+            rows++;
+            if (++groupRows == GROUP_ROWS) {
+                writeGroup();
+            }
+        }
+
+        // Appends the group's column blocks to the file and their lengths to the footer
+        private void writeGroup() throws IOException {
+            writeLong(footer, channel.position());
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                block.reset();
+                if (i == 0) {
+                    block.write(PLAIN);
+                    idColumn.writeTo(block);
+                } else if (stringColumns[i] == null) {
+                    block.write(PLAIN);
+                    birthdateColumn.writeTo(block);
+                } else {
+                    stringColumns[i].writeTo(block);
+                }
+                writeInt(footer, block.size());
+                writeFully(block);
+            }
+            groups++;
+            newGroup();
+        }
+
+        void finish() throws IOException {
+            if (groupRows > 0) {
+                writeGroup();
+            }
+            long footerOffset = channel.position();
+            block.reset();
+            writeInt(block, groups);
+            footer.writeTo(block);
+            writeFully(block);
+
+            block.reset();
+            block.write(MAGIC);
+            writeInt(block, rows);
+            writeLong(block, watermark);
+            writeLong(block, footerOffset);
+            channel.position(0);
+            writeFully(block);
+            channel.force(false);
+            channel.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        private void writeFully(ByteArrayOutputStream data) throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(data.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        // Without finish() the partial file is removed and the target is left as it was
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static final class StringColumnWriter {
+        private final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        private Map<String, Integer> dictionary = new HashMap<>();
+        private final ByteArrayOutputStream dictionaryEntries = new ByteArrayOutputStream();
+        private int[] codes = new int[1024];
+        private int rows;
+
+        void add(String value) throws IOException {
+            VarInts.writeString(plain, value);
+            if (dictionary == null) {
+                return;
+            }
+            int code = 0;
+            if (value != null) {
+                Integer known = dictionary.get(value);
+                if (known == null) {
+                    if (dictionary.size() == MAX_DICTIONARY_SIZE) {
+                        dictionary = null;
+                        codes = null;
+                        return;
+                    }
+                    known = dictionary.size() + 1;
+                    dictionary.put(value, known);
+                    VarInts.writeString(dictionaryEntries, value);
+                }
+                code = known;
+            }
+            if (rows == codes.length) {
+                codes = Arrays.copyOf(codes, rows * 2);
+            }
+            codes[rows++] = code;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            int codeWidth = dictionary == null ? 0 : dictionary.size() <= 0xFF ? 1 : 2;
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            if (dictionary != null) {
+                VarInts.writeUnsigned(header, dictionary.size());
+            }
+            long dictionarySize = (long) header.size() + dictionaryEntries.size() + 1 + (long) rows * codeWidth;
+            if (dictionary == null || dictionarySize >= plain.size()) {
+                out.write(PLAIN);
+                plain.writeTo(out);
+                return;
+            }
+            out.write(DICTIONARY);
+            header.writeTo(out);
+            dictionaryEntries.writeTo(out);
+            out.write(codeWidth);
+            for (int row = 0; row < rows; row++) {
+                for (int shift = (codeWidth - 1) * 8; shift >= 0; shift -= 8) {
+                    out.write(codes[row] >>> shift);
+                }
+            }
+        }
+    }
+
+    // Big-endian, the byte order a MappedByteBuffer reads by default
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.write(value >>> shift);
+        }
+    }
+
+    private static void writeLong(OutputStream out, long value) throws IOException {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+
+    private static LocalDate toLocalDate(java.util.Date date) {
+        return date instanceof Date ? ((Date) date).toLocalDate() : new Date(date.getTime()).toLocalDate();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: ContactSnapshot <file>");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            long start = System.nanoTime();
+            ContactSnapshot snapshot;
+            if (Files.exists(file)) {
+                ContactSnapshot previous = open(file);
+                snapshot = previous.refresh(dao, file);
+                System.out.printf("Refreshed %d rows to %d in %.1f ms%n", previous.size(), snapshot.size(),
+                        (System.nanoTime() - start) / 1e6);
+            } else {
+                snapshot = create(dao, file);
+                System.out.printf("Created %d rows in %.1f ms%n", snapshot.size(), (System.nanoTime() - start) / 1e6);
+            }
+            System.out.println(snapshot);
+            snapshot.describeColumns().forEach((column, description) -> System.out.println("  " + column + ": " + description));
+        } finally {
+            dao.closeConnection();
+        }
+    }
+}
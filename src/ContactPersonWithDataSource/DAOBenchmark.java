@@ -0,0 +1,161 @@
+package ContactPersonWithDataSource;
+
+import java.io.FileInputStream;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Benchmarks every ContactPersonDAO operation of both implementations at several table sizes.
+// It truncates ContactPerson, so it runs against the separate database configured in benchmark.properties.
+//
+// The numbers are indicative only. This is a hand-timed loop, not a JMH harness: every operation runs in one JVM
+// after the ones before it, so JIT state, GC pressure and buffer-pool contents carry over between them, and there
+// are no forks or blackholes. Use it to compare operations and table sizes within one run, not as absolute figures.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.DAOBenchmark [sizes] [seconds]
+//   sizes   - comma-separated row counts, default 1000,100000,1000000
+//   seconds - measurement time per operation, default 3 (plus 1 second of warm-up)
+public class DAOBenchmark {
+    private static final String PROPERTIES = "src/ContactPersonWithDataSource/benchmark.properties";
+    private static final List<String> PROFESSIONS = List.of("Engineer", "Doctor", "Teacher", "Lawyer", "Designer");
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "1000,100000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        long measureNanos = (args.length > 1 ? Long.parseLong(args[1]) : 3) * 1_000_000_000L;
+
+        Properties properties = new Properties();
+        try (FileInputStream file = new FileInputStream(PROPERTIES)) {
+            properties.load(file);
+        }
+        ContactPersonDAO dao = new ContactPersonDAO(PROPERTIES);
+        ContactPersonWithDriverManager.ContactPersonDAO driverManagerDao = new ContactPersonWithDriverManager.ContactPersonDAO(
+                properties.getProperty("DRIVER"), properties.getProperty("MYSQL_DB_URL"),
+                properties.getProperty("USER"), properties.getProperty("PASSWORD"));
+        try {
+            dao.createContactTable();
+            for (int size : sizes) {
+                seed(dao, size);
+                System.out.println("\n=== " + size + " rows ===");
+                System.out.printf("%-44s %10s %10s %10s %10s %10s %12s%n",
+                        "operation", "ops/s", "p50 us", "p99 us", "p99.9 us", "max us", "alloc B/op");
+                runAll(dao, driverManagerDao, size, measureNanos);
+            }
+            System.out.println("\nMapping without a database:");
+            MapperBenchmark.main(new String[0]);
+        } finally {
+            dao.closeConnection();
+            driverManagerDao.getPool().close();
+        }
+    }
+
+    private static void runAll(ContactPersonDAO dao, ContactPersonWithDriverManager.ContactPersonDAO driverManagerDao,
+                               int size, long measureNanos) throws Exception {
+        Random random = new Random(42);
+        // Rows inserted while measuring continue after the seeded ones, so none repeats the natural key of another
+        AtomicInteger nextContact = new AtomicInteger(size);
+        ContactPersonWithDriverManager.ContactPerson driverManagerPerson = new ContactPersonWithDriverManager.ContactPerson();
+        driverManagerPerson.setName("bench-dm");
+        driverManagerPerson.setMail("bench-dm@example.com");
+
+        measure("DataSource insertContactPerson", measureNanos, () -> dao.insertContactPerson(newContact(nextContact.getAndIncrement())));
+        measure("DriverManager insertContactPerson", measureNanos, () -> driverManagerDao.insertContactPerson(driverManagerPerson));
+        measure("DataSource insertContacts (1000 rows)", measureNanos,
+                () -> dao.insertContacts(IntStream.range(0, 1000).mapToObj(i -> newContact(nextContact.getAndIncrement()))));
+        List<ContactPerson> seeded = IntStream.range(0, Math.min(size, 1000)).mapToObj(DAOBenchmark::newContact)
+                .collect(Collectors.toList());
+        measure("DataSource upsertContacts (1000 unchanged)", measureNanos, () -> dao.upsertContacts(seeded));
+        measure("DataSource getContactById", measureNanos, () -> dao.getContactById(1 + random.nextInt(size)));
+        measure("DataSource getContactsPage (deep)", measureNanos, () -> dao.getContactsPage(size - size / 10, 50));
+        measure("DataSource getContactsForName SUBSTRING", measureNanos, () -> dao.getContactsForName("name-1234"));
+        measure("DriverManager getContactsForName", measureNanos, () -> driverManagerDao.getContactsForName("name-1234"));
+        measure("DataSource getContactsForName PREFIX", measureNanos,
+                () -> dao.getContactsForName("name-1234", SearchMode.PREFIX));
+        measure("DataSource getContactsForName FULLTEXT", measureNanos,
+                () -> dao.getContactsForName("name-1234", SearchMode.FULLTEXT));
+        measure("DataSource getContacts", measureNanos, dao::getContacts);
+        measure("DriverManager getContacts", measureNanos, driverManagerDao::getContacts);
+        measure("DataSource streamContacts", measureNanos, () -> {
+            try (Stream<ContactPerson> contacts = dao.streamContacts()) {
+                contacts.count();
+            }
+        });
+        measure("DataSource updateEmails", measureNanos, dao::updateEmails);
+        measure("DataSource updateEmailsInDatabase", measureNanos, () -> dao.updateEmailsInDatabase(0, null));
+    }
+
+    // Runs op for one second to warm up, then records every call's latency and this thread's allocations
+    private static void measure(String label, long measureNanos, Operation op) throws Exception {
+        long warmupEnd = System.nanoTime() + 1_000_000_000L;
+        while (System.nanoTime() < warmupEnd) {
+            op.run();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long[] samples = new long[1024];
+        int count = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long end = start + measureNanos;
+        long now = start;
+        // At least three samples, so slow full-table operations still report something
+        while (now < end || count < 3) {
+            op.run();
+            long after = System.nanoTime();
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = after - now;
+            now = after;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        System.out.printf("%-44s %10.1f %10.1f %10.1f %10.1f %10.1f %12d%n", label,
+                count / ((now - start) / 1_000_000_000.0),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted[count - 1] / 1_000.0, allocated / count);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000.0;
+    }
+
+    private static void seed(ContactPersonDAO dao, int size) throws SQLException {
+        try (Connection conn = dao.getPool().getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("TRUNCATE TABLE ContactPerson");
+        }
+        long start = System.nanoTime();
+        BulkInsertResult result = dao.insertContacts(IntStream.range(0, size).mapToObj(DAOBenchmark::newContact));
+        System.out.printf("%nSeeded %d rows in %.1f s%n", result.getInsertedCount(),
+                (System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    private static ContactPerson newContact(int i) {
+        ContactPerson person = new ContactPerson();
+        person.setName("name-" + i);
+        person.setNickName("nick" + i);
+        person.setAddress(i + " Cairo Street, Egypt");
+        person.setCellphone("010-" + (10_000_000 + i));
+        person.setMail("name-" + i + "@example.com");
+        person.setProfession(PROFESSIONS.get(i % PROFESSIONS.size()));
+        return person;
+    }
+}
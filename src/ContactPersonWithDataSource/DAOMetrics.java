@@ -0,0 +1,41 @@
+package ContactPersonWithDataSource;
+
+// Receives measurements from ContactPersonDAO. Implementations are called on the query thread
+// of every DAO call, so they must be thread-safe and cheap.
+public interface DAOMetrics {
+
+    DAOMetrics NOOP = new DAOMetrics() {
+        @Override
+        public void recordCall(String operation, long nanos) {
+        }
+
+        @Override
+        public void recordError(String operation) {
+        }
+
+        @Override
+        public void recordRows(String operation, long rowsRead, long rowsWritten) {
+        }
+
+        @Override
+        public void recordBatch(String operation, int batchSize) {
+        }
+
+        @Override
+        public void recordConnectionAcquire(long nanos) {
+        }
+    };
+
+    void recordCall(String operation, long nanos);
+
+    void recordError(String operation);
+
+    void recordRows(String operation, long rowsRead, long rowsWritten);
+
+    void recordBatch(String operation, int batchSize);
+
+    void recordConnectionAcquire(long nanos);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,74 @@
+package ContactPersonWithDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+// Full-table export throughput for 1, 2, 4, ... partitions up to POOL_MAX_SIZE, in every format.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.ExportBenchmark [rows]
+//   rows - table size to export, default 1000000; missing rows are inserted first
+public class ExportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        ContactPersonDAO dao = new ContactPersonDAO();
+        Path directory = Files.createTempDirectory("contact-export");
+        try {
+            dao.createContactTable();
+            seed(dao, rows);
+            int maxPartitions = dao.getPool().getMaxSize();
+            System.out.println("=== Export Benchmark (" + dao.countContacts() + " rows) ===\n");
+            System.out.printf("%-8s %-10s %-6s %12s %10s %8s%n", "format", "partitions", "merged", "rows/s", "MB", "speedup");
+
+            ContactExporter exporter = new ContactExporter(dao);
+            for (ContactExporter.Format format : ContactExporter.Format.values()) {
+                Path target = directory.resolve("contacts." + format.getExtension());
+                double baseline = 0;
+                for (int partitions = 1; partitions <= maxPartitions; partitions *= 2) {
+                    exporter.setPartitions(partitions);
+                    ExportResult result = exporter.export(target, false);
+                    if (partitions == 1) {
+                        baseline = result.getRowsPerSecond();
+                    }
+                    print(format, result, false, baseline);
+                    delete(result);
+                }
+                exporter.setPartitions(maxPartitions);
+                ExportResult merged = exporter.export(target, true);
+                print(format, merged, true, baseline);
+                delete(merged);
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+            dao.closeConnection();
+        }
+    }
+
+    private static void seed(ContactPersonDAO dao, int rows) {
+        long missing = rows - dao.countContacts();
+        if (missing > 0) {
+            System.out.println("Inserting " + missing + " rows...");
+            dao.insertContacts(IntStream.range(0, (int) missing).mapToObj(i -> {
+                ContactPerson person = new ContactPerson();
+                person.setName("export-" + i);
+                person.setMail("export-" + i + "@example.com");
+                person.setCellphone("010-" + (10_000_000 + i));
+                person.setProfession(i % 3 == 0 ? "Engineer" : "Teacher");
+                return person;
+            }));
+        }
+    }
+
+    private static void print(ContactExporter.Format format, ExportResult result, boolean merged, double baseline) {
+        System.out.printf("%-8s %-10d %-6s %12.1f %10.1f %7.2fx%n", format, result.getPartitions(), merged ? "yes" : "no",
+                result.getRowsPerSecond(), result.getBytes() / 1e6, result.getRowsPerSecond() / baseline);
+    }
+
+    private static void delete(ExportResult result) throws IOException {
+        for (Path file : result.getFiles()) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
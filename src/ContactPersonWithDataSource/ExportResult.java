@@ -0,0 +1,55 @@
+package ContactPersonWithDataSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExportResult {
+    private final long startNanos = System.nanoTime();
+    private final List<Path> files = new ArrayList<>();
+    private final int partitions;
+    private long rows;
+    private long bytes;
+    private long elapsedNanos;
+
+    ExportResult(int partitions) {
+        this.partitions = partitions;
+    }
+
+    void finish(List<Path> files, long rows, long bytes) {
+        this.files.addAll(files);
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1_000_000_000.0;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows / getElapsedSeconds();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExportResult[rows=%d, partitions=%d, files=%d, bytes=%d, seconds=%.2f, rows/s=%.1f]",
+                rows, partitions, files.size(), bytes, getElapsedSeconds(), getRowsPerSecond());
+    }
+}
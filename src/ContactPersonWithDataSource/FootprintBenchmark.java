@@ -0,0 +1,93 @@
+package ContactPersonWithDataSource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Retained heap of the same synthetic rows held as a List<ContactPerson> and as a ContactPersonTable, measured
+// as the growth of used heap after full GCs, plus the time to scan one column of each. Every row gets its own
+// String objects, as rows read through JDBC do. Needs no database; run with a fixed heap, e.g.
+//
+//   java -Xms4g -Xmx4g -cp . ContactPersonWithDataSource.FootprintBenchmark [rows]
+public class FootprintBenchmark {
+    private static final String[] PROFESSIONS = {"Engineer", "Teacher", "Doctor", "Nurse", "Accountant",
+            "Lawyer", "Designer", "Pharmacist", "Architect", "Sales Representative"};
+    private static final String[] CITIES = {"Cairo", "Alexandria", "Giza", "Mansoura", "Tanta", "Aswan"};
+    private static final String[] PREFIXES = {"010", "011", "012", "015"};
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println("=== Heap Footprint Benchmark (" + rows + " rows) ===\n");
+
+        long before = usedHeap();
+        List<ContactPerson> list = new ArrayList<>();
+        generate(rows, list::add);
+        long listBytes = usedHeap() - before;
+        long listScan = scanList(list);
+        list = null;
+
+        before = usedHeap();
+        ContactPersonTable table = new ContactPersonTable();
+        generate(rows, table::add);
+        table.trimToSize();
+        long tableBytes = usedHeap() - before;
+        long tableScan = scanTable(table);
+
+        System.out.printf("%-22s %12s %10s %14s%n", "", "heap (MB)", "bytes/row", "mail scan (ms)");
+        System.out.printf("%-22s %12.1f %10.1f %14.1f%n", "List<ContactPerson>", listBytes / 1e6,
+                (double) listBytes / rows, listScan / 1e6);
+        System.out.printf("%-22s %12.1f %10.1f %14.1f%n", "ContactPersonTable", tableBytes / 1e6,
+                (double) tableBytes / rows, tableScan / 1e6);
+        System.out.printf("%nContactPersonTable is %.1fx smaller; its arrays hold %.1f MB%n",
+                (double) listBytes / tableBytes, table.getDataBytes() / 1e6);
+        System.out.print(table.describeColumns());
+    }
+
+    private static void generate(int rows, Consumer<ContactPerson> sink) {
+        for (int i = 1; i <= rows; i++) {
+            ContactPerson person = new ContactPerson();
+            person.setId(i);
+            person.setName("Contact " + i);
+            person.setNickName(i % 4 == 0 ? "nick" + (i % 1000) : null);
+            person.setAddress((i % 200) + " Street, " + CITIES[i % CITIES.length]);
+            person.setHomePhone(i % 3 == 0 ? null : "02-" + (20_000_000 + i));
+            person.setWorkPhone(null);
+            person.setCellphone(PREFIXES[i % PREFIXES.length] + (10_000_000 + i));
+            person.setMail("contact" + i + "@example.com");
+            person.setBirthdate(Date.valueOf("19" + (50 + i % 50) + "-0" + (1 + i % 9) + "-1" + (i % 10)));
+            person.setWebsite(i % 10 == 0 ? "https://example.com/" + i : null);
+            // A copy per row, like the driver returns
+            person.setProfession(new String(PROFESSIONS[i % PROFESSIONS.length]));
+            sink.accept(person);
+        }
+    }
+
+    private static long scanList(List<ContactPerson> list) {
+        long start = System.nanoTime();
+        long length = 0;
+        for (ContactPerson person : list) {
+            length += person.getMail().length();
+        }
+        System.out.println("(list checksum " + length + ")");
+        return System.nanoTime() - start;
+    }
+
+    private static long scanTable(ContactPersonTable table) {
+        long start = System.nanoTime();
+        long[] length = {0};
+        table.forEach(row -> length[0] += row.getMail().length());
+        System.out.println("(table checksum " + length[0] + ")\n");
+        return System.nanoTime() - start;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
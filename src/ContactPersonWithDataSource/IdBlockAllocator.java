@@ -0,0 +1,90 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Hands out contact ids from blocks reserved in a row of the ContactPersonIdSequence table, one round trip per
+// block instead of one per id. Every allocator reserving from the same row, in this process or another, gets
+// its own block, so ids stay unique across databases that each have an AUTO_INCREMENT of their own.
+// Ids left in a block when the process stops are skipped, not reused, so ids have gaps but never repeat.
+public class IdBlockAllocator {
+    private final ConnectionPool pool;
+    private final String sequenceName;
+    private final int blockSize;
+    private long nextId;
+    private long blockEnd;
+    private long blocksReserved;
+
+    public IdBlockAllocator(ConnectionPool pool, String sequenceName, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be at least 1, got " + blockSize);
+        }
+        this.pool = pool;
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+    }
+
+    // Creates the table and the sequence row when missing. The sequence is moved forward to firstId if it
+    // is behind, so ids already taken by rows inserted some other way are not handed out again.
+    public void createSequence(int firstId) {
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement();
+             PreparedStatement pstmt = conn.prepareStatement("INSERT INTO ContactPersonIdSequence (name, next_id) " +
+                     "VALUES (?, ?) AS new ON DUPLICATE KEY UPDATE next_id = GREATEST(ContactPersonIdSequence.next_id, new.next_id)")) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS ContactPersonIdSequence (" +
+                    "name VARCHAR(64) PRIMARY KEY, " +
+                    "next_id BIGINT NOT NULL)");
+            pstmt.setString(1, sequenceName);
+            pstmt.setLong(2, firstId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized int nextId() {
+        if (nextId == blockEnd) {
+            reserveBlock();
+        }
+        return (int) nextId++;
+    }
+
+    // Blocks reserved so far; each one cost a round trip to the sequence database
+    public synchronized long getBlocksReserved() {
+        return blocksReserved;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    // LAST_INSERT_ID(expr) remembers the new value for this connection only, so the increment and the read of
+    // its result need no transaction and no lock beyond the row update itself
+    private void reserveBlock() {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "UPDATE ContactPersonIdSequence SET next_id = LAST_INSERT_ID(next_id + ?) WHERE name = ?");
+             Statement stmt = conn.createStatement()) {
+            pstmt.setInt(1, blockSize);
+            pstmt.setString(2, sequenceName);
+            if (pstmt.executeUpdate() == 0) {
+                throw new IllegalStateException("No id sequence " + sequenceName + "; call createSequence() first");
+            }
+            try (ResultSet resultSet = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                resultSet.next();
+                long end = resultSet.getLong(1);
+                if (end - 1 > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Id sequence " + sequenceName + " is past the INT id range");
+                }
+                nextId = end - blockSize;
+                blockEnd = end;
+                blocksReserved++;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ContactPersonWithDataSource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Running totals of a ContactImporter run, updated by the writer threads as chunks are committed
+public class ImportResult {
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong chunksSkipped = new AtomicLong();
+    private volatile long elapsedNanos = -1;
+
+    void addChunk(long read, long inserted, long rejected) {
+        rowsRead.addAndGet(read);
+        rowsInserted.addAndGet(inserted);
+        rowsRejected.addAndGet(rejected);
+        chunks.incrementAndGet();
+    }
+
+    void addSkippedChunk() {
+        chunksSkipped.incrementAndGet();
+    }
+
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getRowsInserted() {
+        return rowsInserted.get();
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public long getChunks() {
+        return chunks.get();
+    }
+
+    // Chunks skipped because an earlier run had already committed them
+    public long getChunksSkipped() {
+        return chunksSkipped.get();
+    }
+
+    public boolean isFinished() {
+        return elapsedNanos >= 0;
+    }
+
+    public double getRowsPerSecond() {
+        long nanos = elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+        return nanos == 0 ? 0 : rowsInserted.get() / (nanos / 1_000_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportResult[read=%d, inserted=%d, rejected=%d, chunks=%d, chunksSkipped=%d, rows/s=%.1f]",
+                getRowsRead(), getRowsInserted(), getRowsRejected(), getChunks(), getChunksSkipped(), getRowsPerSecond());
+    }
+}
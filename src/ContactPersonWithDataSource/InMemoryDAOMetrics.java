@@ -0,0 +1,64 @@
+package ContactPersonWithDataSource;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryDAOMetrics implements DAOMetrics {
+    // Connection acquire times are kept as their own pseudo-operation
+    public static final String CONNECTION_ACQUIRE = "connectionAcquire";
+
+    private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    protected OperationStats createStats(String operation) {
+        return new OperationStats();
+    }
+
+    public OperationStats getStats(String operation) {
+        OperationStats stats = operations.get(operation);
+        // get() first: computeIfAbsent locks the bin even when the key is present
+        return stats != null ? stats : operations.computeIfAbsent(operation, this::createStats);
+    }
+
+    public Map<String, OperationStats> getOperations() {
+        return new TreeMap<>(operations);
+    }
+
+    @Override
+    public void recordCall(String operation, long nanos) {
+        getStats(operation).recordCall(nanos);
+    }
+
+    @Override
+    public void recordError(String operation) {
+        getStats(operation).recordError();
+    }
+
+    @Override
+    public void recordRows(String operation, long rowsRead, long rowsWritten) {
+        getStats(operation).recordRows(rowsRead, rowsWritten);
+    }
+
+    @Override
+    public void recordBatch(String operation, int batchSize) {
+        getStats(operation).recordBatch(batchSize);
+    }
+
+    @Override
+    public void recordConnectionAcquire(long nanos) {
+        getStats(CONNECTION_ACQUIRE).recordCall(nanos);
+    }
+
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("%-32s %8s %6s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "errors", "p50 us", "p99 us", "p99.9 us", "rows read", "rows writ", "avg batch"));
+        for (Map.Entry<String, OperationStats> entry : getOperations().entrySet()) {
+            OperationStats stats = entry.getValue();
+            report.append(String.format("%-32s %8d %6d %10.1f %10.1f %10.1f %10d %10d %10.1f%n",
+                    entry.getKey(), stats.getCalls(), stats.getErrors(),
+                    stats.getP50Micros(), stats.getP99Micros(), stats.getP999Micros(),
+                    stats.getRowsRead(), stats.getRowsWritten(), stats.getMeanBatchSize()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Reports the ContactPerson statements that ran without a usable index, from the statement digests the server
+// keeps in performance_schema (on by default since MySQL 5.7). Each finding carries the EXPLAIN plan of the
+// digest's sample statement and, where an index would help, the Migration step that adds one.
+//
+// The digests accumulate since the server started, so run the workload of interest first; DAO statements
+// that were sent through a replica show up in the replica's digests, not the primary's.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.IndexAdvisor [search term]
+public class IndexAdvisor {
+    private static final String DIGESTS_SQL = "SELECT DIGEST_TEXT, QUERY_SAMPLE_TEXT, COUNT_STAR, SUM_ROWS_EXAMINED, " +
+            "SUM_ROWS_SENT FROM performance_schema.events_statements_summary_by_digest " +
+            "WHERE SCHEMA_NAME = DATABASE() AND (SUM_NO_INDEX_USED > 0 OR SUM_NO_GOOD_INDEX_USED > 0) " +
+            "AND DIGEST_TEXT LIKE '%`ContactPerson`%' ORDER BY SUM_ROWS_EXAMINED DESC";
+    // B-tree indexes only: a FULLTEXT index serves MATCH ... AGAINST, not comparisons
+    private static final String LEADING_COLUMNS_SQL = "SELECT COLUMN_NAME FROM information_schema.STATISTICS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'ContactPerson' AND SEQ_IN_INDEX = 1 " +
+            "AND INDEX_TYPE <> 'FULLTEXT'";
+    // A digest quotes identifiers and replaces literals, e.g. ... WHERE `mail` = ? AND `name` LIKE ?
+    private static final Pattern COMPARED_COLUMN = Pattern.compile(
+            "`(\\w+)`\\s*(?:=|<=>|<|>|<=|>=|IN\\b|LIKE\\b|BETWEEN\\b)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LEADING_WILDCARD = Pattern.compile("LIKE\\s+'%", Pattern.CASE_INSENSITIVE);
+
+    private final ConnectionPool pool;
+
+    public IndexAdvisor(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Findings ordered by rows examined, the most expensive first
+    public List<Finding> analyze() throws SQLException {
+        List<Finding> findings = new ArrayList<>();
+        try (Connection conn = pool.getConnection()) {
+            Set<String> indexedColumns = readLeadingColumns(conn);
+            try (Statement stmt = conn.createStatement();
+                 ResultSet resultSet = stmt.executeQuery(DIGESTS_SQL)) {
+                while (resultSet.next()) {
+                    Finding finding = new Finding(resultSet.getString(1), resultSet.getString(2),
+                            resultSet.getLong(3), resultSet.getLong(4), resultSet.getLong(5));
+                    findings.add(finding);
+                }
+            }
+            for (Finding finding : findings) {
+                explain(conn, finding);
+                advise(finding, indexedColumns);
+            }
+        }
+        return findings;
+    }
+
+    private Set<String> readLeadingColumns(Connection conn) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet resultSet = stmt.executeQuery(LEADING_COLUMNS_SQL)) {
+            while (resultSet.next()) {
+                columns.add(resultSet.getString(1).toLowerCase(Locale.ROOT));
+            }
+        }
+        return columns;
+    }
+
+    // The sample is a statement as it was sent, so it can be explained as it is. It may be missing when the
+    // server truncated it, or hold ? placeholders when the statement was prepared on the server.
+    private void explain(Connection conn, Finding finding) {
+        if (finding.sample == null || !finding.sample.trim().regionMatches(true, 0, "SELECT", 0, 6)) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet plan = stmt.executeQuery("EXPLAIN " + finding.sample)) {
+            while (plan.next()) {
+                if ("ContactPerson".equalsIgnoreCase(plan.getString("table"))) {
+                    finding.accessType = plan.getString("type");
+                    finding.key = plan.getString("key");
+                    finding.estimatedRows = plan.getLong("rows");
+                    finding.extra = plan.getString("Extra");
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            finding.advice.add("EXPLAIN failed: " + e.getMessage());
+        }
+    }
+
+    private void advise(Finding finding, Set<String> indexedColumns) {
+        String digest = finding.digest;
+        int where = digest.toUpperCase(Locale.ROOT).indexOf(" WHERE ");
+        if (where < 0) {
+            finding.advice.add("No WHERE clause: the statement reads the whole table by design");
+            return;
+        }
+        Set<String> unindexed = new LinkedHashSet<>();
+        Matcher matcher = COMPARED_COLUMN.matcher(digest.substring(where));
+        while (matcher.find()) {
+            String column = matcher.group(1);
+            if (!indexedColumns.contains(column.toLowerCase(Locale.ROOT))) {
+                unindexed.add(column);
+            }
+        }
+        if (finding.sample != null && LEADING_WILDCARD.matcher(finding.sample).find()) {
+            finding.advice.add("LIKE '%...' cannot seek a B-tree index; use SearchMode.FULLTEXT or PREFIX");
+        }
+        for (String column : unindexed) {
+            String index = "idx_contact_" + column.toLowerCase(Locale.ROOT);
+            finding.advice.add("No index starts with " + column + "; add a migration with Migration.addIndex(\"ContactPerson\", \""
+                    + index + "\", \"INDEX " + index + " (" + column + ")\")");
+        }
+        if (finding.advice.isEmpty()) {
+            finding.advice.add("Every compared column leads an index; the optimizer judged a scan cheaper "
+                    + "(small table or low selectivity)");
+        }
+    }
+
+    public static final class Finding {
+        private final String digest;
+        private final String sample;
+        private final long calls;
+        private final long rowsExamined;
+        private final long rowsSent;
+        private final List<String> advice = new ArrayList<>();
+        private String accessType;
+        private String key;
+        private long estimatedRows = -1;
+        private String extra;
+
+        private Finding(String digest, String sample, long calls, long rowsExamined, long rowsSent) {
+            this.digest = digest;
+            this.sample = sample;
+            this.calls = calls;
+            this.rowsExamined = rowsExamined;
+            this.rowsSent = rowsSent;
+        }
+
+        // The normalized statement, literals replaced by ?
+        public String getDigest() {
+            return digest;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getRowsExamined() {
+            return rowsExamined;
+        }
+
+        public long getRowsSent() {
+            return rowsSent;
+        }
+
+        // EXPLAIN's type for ContactPerson, e.g. ALL for a full scan; null when not explained
+        public String getAccessType() {
+            return accessType;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public List<String> getAdvice() {
+            return advice;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(digest).append('\n');
+            text.append(String.format("    %d calls, %d rows examined, %d rows sent%n", calls, rowsExamined, rowsSent));
+            if (accessType != null) {
+                text.append(String.format("    EXPLAIN type=%s key=%s rows=%d Extra=%s%n", accessType, key, estimatedRows, extra));
+            }
+            for (String line : advice) {
+                text.append("    -> ").append(line).append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    // Runs the DAO's reads once, so their digests exist, then prints the report
+    public static void main(String[] args) throws SQLException {
+        String term = args.length > 0 ? args[0] : "a";
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            dao.createContactTable();
+            dao.getContactById(1);
+            dao.getContactsPage(0, 100);
+            dao.getContactsPageByName("", 0, 100);
+            for (SearchMode mode : SearchMode.values()) {
+                dao.getContactsForName(term, mode);
+            }
+            dao.countContacts();
+
+            List<Finding> findings = new IndexAdvisor(dao.getPool()).analyze();
+            System.out.println("=== Index Advisor: " + findings.size() + " ContactPerson statements without a usable index ===\n");
+            for (Finding finding : findings) {
+                System.out.println(finding);
+            }
+        } finally {
+            dao.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ContactPersonWithDataSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// In-memory metrics that also publish one MBean per operation, e.g.
+// ContactPersonWithDataSource:type=DAOMetrics,dao=main,operation=getContacts
+public class JmxDAOMetrics extends InMemoryDAOMetrics {
+    private final String daoName;
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<>();
+
+    public JmxDAOMetrics(String daoName) {
+        this.daoName = daoName;
+    }
+
+    @Override
+    protected OperationStats createStats(String operation) {
+        OperationStats stats = super.createStats(operation);
+        try {
+            ObjectName name = new ObjectName("ContactPersonWithDataSource:type=DAOMetrics,dao="
+                    + ObjectName.quote(daoName) + ",operation=" + ObjectName.quote(operation));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(stats, name);
+            registered.add(name);
+        } catch (JMException e) {
+            // Metrics are still collected in memory without the MBean
+            e.printStackTrace();
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // Already gone
+            }
+        }
+        registered.clear();
+    }
+}
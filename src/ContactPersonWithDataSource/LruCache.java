@@ -0,0 +1,131 @@
+package ContactPersonWithDataSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Size-bounded LRU cache with a time-to-live, safe for concurrent use.
+// Values are loaded outside the lock, so a slow load does not block readers of other keys.
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // Bumped by every invalidation so a load that raced with it does not store a stale value
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long loads;
+    private long totalLoadNanos;
+
+    public LruCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Returns the cached value, or loads, caches and returns it; null results are not cached
+    public V get(K key, Function<K, V> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.createdNanos < ttlNanos) {
+                    hits++;
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictions++;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        long start = System.nanoTime();
+        V value = loader.apply(key);
+        long loadNanos = System.nanoTime() - start;
+
+        synchronized (this) {
+            loads++;
+            totalLoadNanos += loadNanos;
+            if (value != null && loadGeneration == generation) {
+                entries.put(key, new Entry<>(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    // Stores a value without a loader, e.g. to warm the cache at startup
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getAverageLoadMillis() {
+        return loads == 0 ? 0 : totalLoadNanos / 1_000_000.0 / loads;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LruCache[size=" + entries.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", hitRatio=" + String.format("%.3f", getHitRatio()) +
+                ", evictions=" + evictions +
+                ", avgLoadMs=" + String.format("%.3f", getAverageLoadMillis()) + "]";
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long createdNanos;
+
+        private Entry(V value, long createdNanos) {
+            this.value = value;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -18,9 +18,9 @@ public class Main {
             System.out.println("\n2. Creating contacts table...");
             boolean tableCreated = dao.createContactTable();
             if (tableCreated) {
-                System.out.println("✓ Table created successfully!");
+                System.out.println("\u2713 Table created successfully!");
             } else {
-                System.out.println("✗ Failed to create table");
+                System.out.println("\u2717 Failed to create table");
             }
 
             // Test 2: Create test contacts
@@ -39,7 +39,7 @@ public class Main {
             contact1.setProfession("Software Engineer");
 
             boolean inserted1 = dao.insertContactPerson(contact1);
-            System.out.println("Contact 1 inserted: " + (inserted1 ? "✓ Success" : "✗ Failed"));
+            System.out.println("Contact 1 inserted: " + (inserted1 ? "\u2713 Success" : "\u2717 Failed"));
 
             // Create second contact
             ContactPerson contact2 = new ContactPerson();
@@ -52,7 +52,7 @@ public class Main {
             contact2.setProfession("Doctor");
 
             boolean inserted2 = dao.insertContactPerson(contact2);
-            System.out.println("Contact 2 inserted: " + (inserted2 ? "✓ Success" : "✗ Failed"));
+            System.out.println("Contact 2 inserted: " + (inserted2 ? "\u2713 Success" : "\u2717 Failed"));
 
             // Test 3: Retrieve all contacts
             System.out.println("\n4. Retrieving all contacts...");
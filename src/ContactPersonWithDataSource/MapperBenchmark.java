@@ -0,0 +1,105 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+// Compares label-based and index-based row mapping on an in-memory CachedRowSet, so it needs no database
+public class MapperBenchmark {
+    private static final String[] COLUMNS = {"id", "name", "nickname", "address", "homePhone",
+            "workPhone", "cellphone", "mail", "birthdate", "website", "profession"};
+    private static final int ROWS = 10_000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws SQLException {
+        System.out.println("=== ResultSet Mapping Benchmark (" + ROWS + " rows x " + ROUNDS + " rounds) ===\n");
+        CachedRowSet rowSet = createRowSet();
+
+        // Warm up both paths before measuring
+        for (int i = 0; i < 5; i++) {
+            mapByLabel(rowSet);
+            mapByIndex(rowSet);
+        }
+
+        long labelNanos = 0;
+        long indexNanos = 0;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += mapByLabel(rowSet);
+            labelNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            checksum += mapByIndex(rowSet);
+            indexNanos += System.nanoTime() - start;
+        }
+
+        long totalRows = (long) ROWS * ROUNDS;
+        System.out.printf("%-24s %10.1f ns/row%n", "by label (getString)", (double) labelNanos / totalRows);
+        System.out.printf("%-24s %10.1f ns/row%n", "ContactPersonMapper", (double) indexNanos / totalRows);
+        System.out.println("\n(checksum " + checksum + ")");
+    }
+
+    private static CachedRowSet createRowSet() throws SQLException {
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(COLUMNS.length);
+        for (int i = 1; i <= COLUMNS.length; i++) {
+            metaData.setColumnName(i, COLUMNS[i - 1]);
+            metaData.setColumnLabel(i, COLUMNS[i - 1]);
+            metaData.setColumnType(i, i == 1 ? Types.INTEGER : i == 9 ? Types.DATE : Types.VARCHAR);
+        }
+        rowSet.setMetaData(metaData);
+
+        for (int row = 0; row < ROWS; row++) {
+            rowSet.moveToInsertRow();
+            rowSet.updateInt(1, row + 1);
+            for (int i = 2; i <= COLUMNS.length; i++) {
+                if (i == 9) {
+                    rowSet.updateDate(i, new Date(0));
+                } else {
+                    rowSet.updateString(i, COLUMNS[i - 1] + "-" + row);
+                }
+            }
+            rowSet.insertRow();
+            rowSet.moveToCurrentRow();
+        }
+        return rowSet;
+    }
+
+    // The mapping ContactPersonDAO used before ContactPersonMapper
+    private static long mapByLabel(ResultSet resultSet) throws SQLException {
+        resultSet.beforeFirst();
+        long checksum = 0;
+        while (resultSet.next()) {
+            ContactPerson result = new ContactPerson();
+            result.setId(resultSet.getInt("id"));
+            result.setName(resultSet.getString("name"));
+            result.setNickName(resultSet.getString("nickname"));
+            result.setAddress(resultSet.getString("address"));
+            result.setHomePhone(resultSet.getString("homePhone"));
+            result.setWorkPhone(resultSet.getString("workPhone"));
+            result.setCellphone(resultSet.getString("cellphone"));
+            result.setMail(resultSet.getString("mail"));
+            result.setBirthdate(resultSet.getDate("birthdate"));
+            result.setWebsite(resultSet.getString("website"));
+            result.setProfession(resultSet.getString("profession"));
+            checksum += result.getId();
+        }
+        return checksum;
+    }
+
+    private static long mapByIndex(ResultSet resultSet) throws SQLException {
+        resultSet.beforeFirst();
+        long checksum = 0;
+        ContactPersonMapper mapper = new ContactPersonMapper(resultSet);
+        while (resultSet.next()) {
+            checksum += mapper.map(resultSet).getId();
+        }
+        return checksum;
+    }
+}
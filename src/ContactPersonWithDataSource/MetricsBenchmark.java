@@ -0,0 +1,73 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+// Measures what the DAO instrumentation adds to one call: two nanoTime reads plus the records a
+// query makes. Runs without a database; compare the result with DAOBenchmark's per-call latency.
+public class MetricsBenchmark {
+    private static final String[] OPERATIONS = {"getContactById", "getContactsPage", "getContactsForName", "insertContactPerson"};
+    private static final int CALLS_PER_THREAD = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("=== DAO Metrics Overhead (" + threads + " threads x " + CALLS_PER_THREAD + " calls) ===\n");
+
+        InMemoryDAOMetrics inMemory = new InMemoryDAOMetrics();
+        JmxDAOMetrics jmx = new JmxDAOMetrics("MetricsBenchmark");
+        // Warm up every implementation before measuring
+        for (int i = 0; i < 3; i++) {
+            run(DAOMetrics.NOOP, threads);
+            run(inMemory, threads);
+            run(jmx, threads);
+        }
+
+        System.out.printf("%-12s %12s%n", "metrics", "ns/call");
+        System.out.printf("%-12s %12.1f%n", "none", run(DAOMetrics.NOOP, threads));
+        System.out.printf("%-12s %12.1f%n", "memory", run(inMemory, threads));
+        System.out.printf("%-12s %12.1f%n", "jmx", run(jmx, threads));
+
+        System.out.println();
+        System.out.print(inMemory.report());
+        jmx.close();
+    }
+
+    // Average wall-clock nanoseconds per instrumented call, per thread
+    private static double run(DAOMetrics metrics, int threads) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        long[] elapsed = new long[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long begin = System.nanoTime();
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    String operation = OPERATIONS[i & 3];
+                    long start = System.nanoTime();
+                    metrics.recordConnectionAcquire(System.nanoTime() - start);
+                    metrics.recordRows(operation, i & 15, 0);
+                    metrics.recordCall(operation, System.nanoTime() - start);
+                }
+                elapsed[worker] = System.nanoTime() - begin;
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        ready.await();
+        go.countDown();
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers.get(t).join();
+            total += elapsed[t];
+        }
+        return (double) total / threads / CALLS_PER_THREAD;
+    }
+}
@@ -0,0 +1,112 @@
+package ContactPersonWithDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+// One versioned schema change for SchemaMigrator: steps applied in order and recorded under the version once
+// all of them succeeded. Every step first checks whether its object exists, so a migration that failed
+// halfway, or a schema that was built before migrations were recorded, can simply be migrated again.
+// A migration must not change once released; its checksum is compared with the recorded one on every run.
+public class Migration {
+    private final int version;
+    private final String description;
+    private final List<Step> steps;
+
+    public Migration(int version, String description, Step... steps) {
+        this.version = version;
+        this.description = description;
+        this.steps = List.of(steps);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    // SHA-256 of the steps, in hex
+    public String getChecksum() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Step step : steps) {
+                digest.update((step.kind + "\n" + step.table + "\n" + step.name + "\n" + step.sql + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " " + description;
+    }
+
+    // CREATE TABLE IF NOT EXISTS ...
+    public static Step createTable(String table, String createTableSQL) {
+        return new Step(Step.Kind.TABLE, table, table, createTableSQL, false);
+    }
+
+    // Added unless the table already has the column; e.g. addColumn("ContactPerson", "version", "BIGINT NOT NULL DEFAULT 1")
+    public static Step addColumn(String table, String column, String definition) {
+        return new Step(Step.Kind.COLUMN, table, column, definition, false);
+    }
+
+    // Built online unless the table already has an index of that name; e.g.
+    // addIndex("ContactPerson", "idx_contact_mail", "INDEX idx_contact_mail (mail)")
+    public static Step addIndex(String table, String index, String definition) {
+        return new Step(Step.Kind.INDEX, table, index, definition, false);
+    }
+
+    // CREATE TRIGGER ..., unless a trigger of that name exists
+    public static Step createTrigger(String table, String trigger, String createTriggerSQL) {
+        return new Step(Step.Kind.TRIGGER, table, trigger, createTriggerSQL, false);
+    }
+
+    public static final class Step {
+        enum Kind { TABLE, COLUMN, INDEX, TRIGGER }
+
+        final Kind kind;
+        final String table;
+        final String name;
+        final String sql;
+        final boolean optional;
+
+        private Step(Kind kind, String table, String name, String sql, boolean optional) {
+            this.kind = kind;
+            this.table = table;
+            this.name = name;
+            this.sql = sql;
+            this.optional = optional;
+        }
+
+        // A step whose failure is reported instead of failing the migration, whatever the cause: a constraint
+        // violation (e.g. a unique index over duplicate rows), a lock wait timeout, or an online index build
+        // that outgrew innodb_online_alter_log_max_size. It is tried again on every run until it succeeds.
+        public Step optional() {
+            return new Step(kind, table, name, sql, true);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return kind.name().toLowerCase() + " " + name;
+        }
+    }
+}
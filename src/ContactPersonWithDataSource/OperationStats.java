@@ -0,0 +1,83 @@
+package ContactPersonWithDataSource;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class OperationStats implements OperationStatsMBean {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram batchSizes = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+
+    void recordCall(long nanos) {
+        latency.record(nanos);
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    void recordRows(long read, long written) {
+        rowsRead.add(read);
+        rowsWritten.add(written);
+    }
+
+    void recordBatch(int batchSize) {
+        batchSizes.record(batchSize);
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    @Override
+    public long getBatches() {
+        return batchSizes.getCount();
+    }
+
+    @Override
+    public double getMeanBatchSize() {
+        return batchSizes.getMean();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMean() / 1_000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.getValueAtPercentile(0.50) / 1_000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.getValueAtPercentile(0.99) / 1_000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.getValueAtPercentile(0.999) / 1_000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMax() / 1_000.0;
+    }
+}
@@ -0,0 +1,25 @@
+package ContactPersonWithDataSource;
+
+public interface OperationStatsMBean {
+    long getCalls();
+
+    long getErrors();
+
+    long getRowsRead();
+
+    long getRowsWritten();
+
+    long getBatches();
+
+    double getMeanBatchSize();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
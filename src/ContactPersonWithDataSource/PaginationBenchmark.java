@@ -0,0 +1,82 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class PaginationBenchmark {
+    private static final int PAGE_SIZE = 50;
+    private static final int REPETITIONS = 20;
+
+    public static void main(String[] args) throws SQLException {
+        System.out.println("=== Keyset vs OFFSET Pagination Benchmark ===\n");
+
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            dao.createContactTable();
+            int rows = countRows(dao);
+            System.out.println("Table has " + rows + " rows, page size " + PAGE_SIZE + "\n");
+            System.out.printf("%12s %14s %14s%n", "offset", "keyset (ms)", "OFFSET (ms)");
+
+            for (double depth : new double[]{0, 0.25, 0.5, 0.75, 0.99}) {
+                int offset = (int) (rows * depth);
+                // The keyset cursor for a page is the id of the row just before it
+                int afterId = offset == 0 ? 0 : idAtOffset(dao, offset - 1);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < REPETITIONS; i++) {
+                    List<ContactPerson> page = dao.getContactsPage(afterId, PAGE_SIZE);
+                    if (page.isEmpty() && offset < rows) {
+                        throw new IllegalStateException("Empty keyset page at offset " + offset);
+                    }
+                }
+                double keysetMillis = (System.nanoTime() - start) / 1_000_000.0 / REPETITIONS;
+
+                start = System.nanoTime();
+                for (int i = 0; i < REPETITIONS; i++) {
+                    offsetPage(dao, offset);
+                }
+                double offsetMillis = (System.nanoTime() - start) / 1_000_000.0 / REPETITIONS;
+
+                System.out.printf("%12d %14.3f %14.3f%n", offset, keysetMillis, offsetMillis);
+            }
+        } finally {
+            dao.closeConnection();
+        }
+    }
+
+    private static int countRows(ContactPersonDAO dao) throws SQLException {
+        try (Connection conn = dao.getPool().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM ContactPerson");
+             ResultSet resultSet = pstmt.executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static int idAtOffset(ContactPersonDAO dao, int offset) throws SQLException {
+        try (Connection conn = dao.getPool().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM ContactPerson ORDER BY id LIMIT 1 OFFSET ?")) {
+            pstmt.setInt(1, offset);
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    // The baseline: the server reads and discards every row before the offset
+    private static void offsetPage(ContactPersonDAO dao, int offset) throws SQLException {
+        try (Connection conn = dao.getPool().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM ContactPerson ORDER BY id LIMIT ? OFFSET ?")) {
+            pstmt.setInt(1, PAGE_SIZE);
+            pstmt.setInt(2, offset);
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                while (resultSet.next()) {
+                    resultSet.getInt("id");
+                }
+            }
+        }
+    }
+}
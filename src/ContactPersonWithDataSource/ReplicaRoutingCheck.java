@@ -0,0 +1,150 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Checks read/write routing against stand-ins from replica.properties: the primary database, a second database
+// on the same server standing in for a replica, and an unreachable replica. Nothing replicates between the two
+// databases, so where a row is found shows where the read went. Exits with status 1 when a check fails.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.ReplicaRoutingCheck
+public class ReplicaRoutingCheck {
+    private static final int READERS = 4;
+    private static final int READS_PER_READER = 250;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Replica Routing Check ===\n");
+        ContactPersonDAO dao = new ContactPersonDAO("src/ContactPersonWithDataSource/replica.properties");
+        String runId = "replica-check-" + System.nanoTime();
+        ReplicaSet.Replica standIn = dao.getReplicas().getReplicas().get(0);
+        try {
+            dao.createContactTable();
+            // Only the stand-in has this row, only the primary gets the one written through the DAO
+            try (Connection conn = standIn.getPool().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS ContactPerson LIKE " + primaryDatabase(dao) + ".ContactPerson");
+                stmt.executeUpdate("INSERT INTO ContactPerson (name) VALUES ('" + runId + "-replica')");
+            }
+            ContactPerson written = new ContactPerson();
+            written.setName(runId + "-primary");
+            dao.insertContactPerson(written);
+
+            check("write went to the primary", countOnPrimary(dao, runId + "-primary") == 1);
+            check("read inside the read-your-writes window sees the write",
+                    dao.getContactsForName(runId + "-primary").size() == 1);
+            Thread.sleep(600);
+            check("read after the window goes to the replica",
+                    dao.getContactsForName(runId + "-replica").size() == 1
+                            && dao.getContactsForName(runId + "-primary").isEmpty());
+            Thread writer = new Thread(() -> {
+                ContactPerson other = new ContactPerson();
+                other.setName(runId + "-other-thread");
+                dao.insertContactPerson(other);
+            });
+            writer.start();
+            writer.join();
+            check("another thread's write leaves this thread's reads on the replica",
+                    dao.getContactsForName(runId + "-replica").size() == 1);
+
+            Thread.sleep(1500);
+            ReplicaSet.Replica unreachable = dao.getReplicas().getReplicas().get(1);
+            check("health check took the unreachable replica out", !unreachable.isHealthy() && standIn.isHealthy());
+
+            long before = standIn.getReads();
+            ExecutorService executor = Executors.newFixedThreadPool(READERS);
+            try {
+                List<Future<?>> readers = new ArrayList<>();
+                for (int i = 0; i < READERS; i++) {
+                    readers.add(executor.submit(() -> {
+                        for (int read = 0; read < READS_PER_READER; read++) {
+                            dao.getContactsPage(0, 10);
+                        }
+                    }));
+                }
+                for (Future<?> reader : readers) {
+                    reader.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            check("concurrent reads all went to the healthy replica",
+                    standIn.getReads() - before == READERS * READS_PER_READER && unreachable.getReads() == 0);
+
+            // A replica with every connection borrowed is busy: the read goes to the primary without waiting
+            // for the pool's full timeout, and the replica stays in rotation
+            List<Connection> held = new ArrayList<>();
+            try {
+                for (int i = 0; i < standIn.getPool().getMaxSize(); i++) {
+                    held.add(standIn.getPool().getConnection());
+                }
+                long start = System.nanoTime();
+                boolean fromPrimary = dao.getContactsForName(runId + "-primary").size() == 1;
+                long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+                check("read falls back to the primary while the replica is busy (" + waitedMillis + " ms)",
+                        fromPrimary && waitedMillis < 1000);
+                Thread.sleep(1500);
+                check("busy replica stays in rotation", standIn.isHealthy() && standIn.getBusyCount() > 0);
+            } finally {
+                for (Connection conn : held) {
+                    conn.close();
+                }
+            }
+
+            // A replica that cannot hand out connections is skipped and reads fall back to the primary
+            try (Connection conn = standIn.getPool().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM ContactPerson WHERE name LIKE '" + runId + "%'");
+            }
+            standIn.getPool().close();
+            long unavailable = dao.getReplicas().getUnavailableCount();
+            check("reads fall back to the primary when no replica is up",
+                    dao.getContactsForName(runId + "-primary").size() == 1
+                            && dao.getReplicas().getUnavailableCount() == unavailable + 1);
+
+            System.out.println("\n" + dao.getReplicas());
+        } finally {
+            try (Connection conn = dao.getPool().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM ContactPerson WHERE name LIKE '" + runId + "%'");
+            }
+            dao.closeConnection();
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String primaryDatabase(ContactPersonDAO dao) throws SQLException {
+        try (Connection conn = dao.getPool().getConnection()) {
+            return conn.getCatalog();
+        }
+    }
+
+    private static int countOnPrimary(ContactPersonDAO dao, String name) throws SQLException {
+        try (Connection conn = dao.getPool().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM ContactPerson WHERE name = ?")) {
+            pstmt.setString(1, name);
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    private static void check(String description, boolean passed) {
+        System.out.println((passed ? "\u2713 " : "\u2717 ") + description);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
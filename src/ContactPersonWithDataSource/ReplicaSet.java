@@ -0,0 +1,227 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The read replicas of a ContactPersonDAO, each with its own ConnectionPool. A read goes to the healthy replica
+// with the fewest borrowed connections, ties taken in turn, so a replica stuck on a slow scan gets fewer reads.
+// A daemon thread checks every replica each healthCheckMillis; one that fails the check stops receiving reads
+// until a later check passes, and one whose connection cannot be opened is taken out at once. A replica whose
+// pool is exhausted is only busy: the read moves on, to the primary if need be, and the replica stays in.
+// Give the replica pools a short acquire timeout, so such a read does not wait long before moving on.
+public class ReplicaSet implements AutoCloseable {
+    private final List<Replica> replicas;
+    private final int maxLagSeconds;
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong unavailableCount = new AtomicLong();
+
+    // maxLagSeconds < 0 skips the replication lag check
+    public ReplicaSet(List<String> names, List<ConnectionPool> pools, long healthCheckMillis, int maxLagSeconds) {
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < pools.size(); i++) {
+            replicas.add(new Replica(names.get(i), pools.get(i)));
+        }
+        this.replicas = Collections.unmodifiableList(replicas);
+        this.maxLagSeconds = maxLagSeconds;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ReplicaSet-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, healthCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // A connection to a healthy replica, or null when none is available and the read should go to the primary
+    Connection getConnection() {
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        boolean[] tried = new boolean[replicas.size()];
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            int chosen = -1;
+            for (int i = 0; i < replicas.size(); i++) {
+                int index = (start + i) % replicas.size();
+                Replica replica = replicas.get(index);
+                if (replica.healthy && !tried[index] && (chosen == -1
+                        || replica.pool.getActiveConnections() < replicas.get(chosen).pool.getActiveConnections())) {
+                    chosen = index;
+                }
+            }
+            if (chosen == -1) {
+                break;
+            }
+            tried[chosen] = true;
+            Replica replica = replicas.get(chosen);
+            try {
+                Connection conn = replica.pool.getConnection();
+                replica.reads.incrementAndGet();
+                return conn;
+            } catch (ConnectionPool.PoolExhaustedException e) {
+                replica.busy.incrementAndGet();
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        unavailableCount.incrementAndGet();
+        return null;
+    }
+
+    private void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.pool.getConnection()) {
+                if (!conn.isValid(5)) {
+                    throw new SQLException("Connection is not valid");
+                }
+                if (maxLagSeconds >= 0) {
+                    long lag = readLagSeconds(conn);
+                    replica.lagSeconds = lag;
+                    if (lag < 0 || lag > maxLagSeconds) {
+                        throw new SQLException(lag < 0 ? "Replication is not running"
+                                : "Replication lag " + lag + " s exceeds " + maxLagSeconds + " s");
+                    }
+                }
+                replica.markUp();
+            } catch (ConnectionPool.PoolExhaustedException e) {
+                // Every connection is serving reads; the next check tries again
+                replica.busy.incrementAndGet();
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    // Seconds_Behind_Source, or -1 while replication is stopped. A server that is not a replica reports no
+    // status row and counts as up to date, which lets a plain database stand in for a replica.
+    private static long readLagSeconds(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            ResultSet status;
+            String column = "Seconds_Behind_Source";
+            try {
+                status = stmt.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                // Before MySQL 8.0.22
+                status = stmt.executeQuery("SHOW SLAVE STATUS");
+                column = "Seconds_Behind_Master";
+            }
+            try (ResultSet resultSet = status) {
+                if (!resultSet.next()) {
+                    return 0;
+                }
+                long lag = resultSet.getLong(column);
+                return resultSet.wasNull() ? -1 : lag;
+            }
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public boolean hasHealthyReplica() {
+        return replicas.stream().anyMatch(Replica::isHealthy);
+    }
+
+    // Reads that found no healthy replica and went to the primary instead
+    public long getUnavailableCount() {
+        return unavailableCount.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("ReplicaSet[unavailable=" + getUnavailableCount());
+        for (Replica replica : replicas) {
+            description.append(", ").append(replica);
+        }
+        return description.append(']').toString();
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    public static final class Replica {
+        private final String name;
+        private final ConnectionPool pool;
+        private final AtomicLong reads = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong busy = new AtomicLong();
+        // Until the first health check, a replica is trusted; a failing one is taken out by its first borrow
+        private volatile boolean healthy = true;
+        private volatile long lagSeconds;
+        private volatile String lastError;
+
+        private Replica(String name, ConnectionPool pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+
+        private void markUp() {
+            if (!healthy) {
+                System.err.println("Replica " + name + " back in rotation");
+            }
+            healthy = true;
+        }
+
+        private void markDown(SQLException e) {
+            if (healthy) {
+                System.err.println("Replica " + name + " taken out of rotation: " + e.getMessage());
+            }
+            healthy = false;
+            failures.incrementAndGet();
+            lastError = e.getMessage();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ConnectionPool getPool() {
+            return pool;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public long getReads() {
+            return reads.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        // Borrows skipped because every connection of the replica's pool was in use
+        public long getBusyCount() {
+            return busy.get();
+        }
+
+        // As of the last health check; 0 unless a lag limit is set
+        public long getLagSeconds() {
+            return lagSeconds;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        @Override
+        public String toString() {
+            return name + "[" + (healthy ? "up" : "down: " + lastError) + ", reads=" + getReads()
+                    + ", failures=" + getFailures() + ", busy=" + getBusyCount() + ", active=" + pool.getActiveConnections() + "]";
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Brings a database up to the latest Migration and records each applied version, with its checksum, in
+// ContactPersonSchemaVersion. A named lock keeps two processes from migrating the same database at once.
+//
+// Indexes are built with ALGORITHM=INPLACE, LOCK=NONE so reads and writes continue while a large table is
+// indexed, and columns are added with ALGORITHM=INSTANT where the server can. DDL the server cannot run
+// that way (e.g. the first FULLTEXT index of a table) falls back to its default algorithm, and the Listener
+// is told.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.SchemaMigrator [status]
+public class SchemaMigrator {
+    // ER_ALTER_OPERATION_NOT_SUPPORTED and ER_ALTER_OPERATION_NOT_SUPPORTED_REASON
+    private static final int NOT_SUPPORTED = 1845;
+    private static final int NOT_SUPPORTED_REASON = 1846;
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // Told what a run works around instead of failing
+    public interface Listener {
+        // Prints to System.out
+        Listener STDOUT = new Listener() {
+            @Override
+            public void optionalStepSkipped(Migration.Step step, SQLException e) {
+                System.out.println("Skipped " + step + ", will retry on the next migration: " + e.getMessage());
+            }
+
+            @Override
+            public void onlineDdlRefused(String sql, String fallback, SQLException e) {
+                System.out.println("Cannot run \"" + sql + "\": " + e.getMessage() + "; running \"" + fallback + "\" instead");
+            }
+        };
+
+        // An optional step failed and was left for the next run
+        void optionalStepSkipped(Migration.Step step, SQLException e);
+
+        // The server refused to run sql online; fallback, the next online clause or the plain DDL, runs next
+        void onlineDdlRefused(String sql, String fallback, SQLException e);
+    }
+
+    private final ConnectionPool pool;
+    private Listener listener = Listener.STDOUT;
+
+    public SchemaMigrator(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : Listener.STDOUT;
+    }
+
+    // Applies the migrations above the recorded version, in version order, and returns them. Throws
+    // IllegalStateException when a recorded migration's checksum no longer matches its code.
+    public List<Migration> migrate(List<Migration> migrations) throws SQLException {
+        List<Migration> applied = new ArrayList<>();
+        try (Connection conn = pool.getConnection()) {
+            lock(conn);
+            try {
+                createVersionTable(conn);
+                Map<Integer, String> recorded = readChecksums(conn);
+                for (Migration migration : migrations) {
+                    String checksum = recorded.get(migration.getVersion());
+                    if (checksum != null) {
+                        if (!checksum.equals(migration.getChecksum())) {
+                            throw new IllegalStateException(migration + " was changed after it was applied; "
+                                    + "add a new migration instead");
+                        }
+                        retryOptionalSteps(conn, migration);
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    for (Migration.Step step : migration.getSteps()) {
+                        apply(conn, step);
+                    }
+                    record(conn, migration, (System.nanoTime() - start) / 1_000_000);
+                    System.out.println("Applied schema migration " + migration);
+                    applied.add(migration);
+                }
+            } finally {
+                unlock(conn);
+            }
+        }
+        return applied;
+    }
+
+    // Applies steps without recording a version, for objects a setting turns on, such as the change feed
+    public void ensure(List<Migration.Step> steps) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            lock(conn);
+            try {
+                for (Migration.Step step : steps) {
+                    apply(conn, step);
+                }
+            } finally {
+                unlock(conn);
+            }
+        }
+    }
+
+    // Version to description of every recorded migration
+    public Map<Integer, String> getAppliedMigrations() throws SQLException {
+        Map<Integer, String> applied = new LinkedHashMap<>();
+        try (Connection conn = pool.getConnection()) {
+            createVersionTable(conn);
+            try (Statement stmt = conn.createStatement();
+                 ResultSet resultSet = stmt.executeQuery("SELECT version, description, applied_at, execution_ms " +
+                         "FROM ContactPersonSchemaVersion ORDER BY version")) {
+                while (resultSet.next()) {
+                    applied.put(resultSet.getInt(1), resultSet.getString(2) + " (" + resultSet.getTimestamp(3)
+                            + ", " + resultSet.getLong(4) + " ms)");
+                }
+            }
+        }
+        return applied;
+    }
+
+    private void lock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(CONCAT('ContactPerson.migrate.', DATABASE()), ?)")) {
+            pstmt.setInt(1, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                    throw new SQLException("Another process has been migrating this database for " + LOCK_TIMEOUT_SECONDS + " s");
+                }
+            }
+        }
+    }
+
+    private void unlock(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT RELEASE_LOCK(CONCAT('ContactPerson.migrate.', DATABASE()))");
+        }
+    }
+
+    private void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS ContactPersonSchemaVersion (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "checksum CHAR(64) NOT NULL, " +
+                    "applied_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), " +
+                    "execution_ms BIGINT NOT NULL)");
+        }
+    }
+
+    private Map<Integer, String> readChecksums(Connection conn) throws SQLException {
+        Map<Integer, String> checksums = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet resultSet = stmt.executeQuery("SELECT version, checksum FROM ContactPersonSchemaVersion")) {
+            while (resultSet.next()) {
+                checksums.put(resultSet.getInt(1), resultSet.getString(2));
+            }
+        }
+        return checksums;
+    }
+
+    private void record(Connection conn, Migration migration, long executionMillis) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO ContactPersonSchemaVersion " +
+                "(version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+            pstmt.setInt(1, migration.getVersion());
+            pstmt.setString(2, migration.getDescription());
+            pstmt.setString(3, migration.getChecksum());
+            pstmt.setLong(4, executionMillis);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void retryOptionalSteps(Connection conn, Migration migration) throws SQLException {
+        for (Migration.Step step : migration.getSteps()) {
+            if (step.optional) {
+                apply(conn, step);
+            }
+        }
+    }
+
+    private void apply(Connection conn, Migration.Step step) throws SQLException {
+        try {
+            switch (step.kind) {
+                case TABLE:
+                    execute(conn, step.sql);
+                    break;
+                case COLUMN:
+                    if (!exists(conn, "SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                            "AND TABLE_NAME = ? AND COLUMN_NAME = ?", step.table, step.name)) {
+                        String alter = "ALTER TABLE " + step.table + " ADD COLUMN " + step.name + " " + step.sql;
+                        executeOnline(conn, alter, ", ALGORITHM=INSTANT", ", ALGORITHM=INPLACE, LOCK=NONE");
+                    }
+                    break;
+                case INDEX:
+                    if (!exists(conn, "SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() " +
+                            "AND TABLE_NAME = ? AND INDEX_NAME = ?", step.table, step.name)) {
+                        executeOnline(conn, "ALTER TABLE " + step.table + " ADD " + step.sql,
+                                ", ALGORITHM=INPLACE, LOCK=NONE");
+                    }
+                    break;
+                default:
+                    if (!exists(conn, "SELECT 1 FROM information_schema.TRIGGERS WHERE TRIGGER_SCHEMA = DATABASE() " +
+                            "AND EVENT_OBJECT_TABLE = ? AND TRIGGER_NAME = ?", step.table, step.name)) {
+                        execute(conn, step.sql);
+                    }
+            }
+        } catch (SQLException e) {
+            // Whatever stops an optional step, be it duplicate rows, a lock wait timeout or an online build
+            // whose change log outgrew innodb_online_alter_log_max_size, only postpones it
+            if (!step.optional) {
+                throw e;
+            }
+            listener.optionalStepSkipped(step, e);
+        }
+    }
+
+    // Tries the DDL with each online clause in turn, then as written
+    private void executeOnline(Connection conn, String sql, String... onlineClauses) throws SQLException {
+        for (int i = 0; i < onlineClauses.length; i++) {
+            try {
+                execute(conn, sql + onlineClauses[i]);
+                return;
+            } catch (SQLException e) {
+                if (e.getErrorCode() != NOT_SUPPORTED && e.getErrorCode() != NOT_SUPPORTED_REASON) {
+                    throw e;
+                }
+                listener.onlineDdlRefused(sql + onlineClauses[i],
+                        i + 1 < onlineClauses.length ? sql + onlineClauses[i + 1] : sql, e);
+            }
+        }
+        execute(conn, sql);
+    }
+
+    private void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private boolean exists(Connection conn, String lookupSQL, String... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(lookupSQL)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = pstmt.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            SchemaMigrator migrator = new SchemaMigrator(dao.getPool());
+            if (args.length == 0 || !args[0].equals("status")) {
+                System.out.println(migrator.migrate(ContactPersonSchema.MIGRATIONS).size() + " migrations applied");
+            }
+            Map<Integer, String> applied = migrator.getAppliedMigrations();
+            for (Migration migration : ContactPersonSchema.MIGRATIONS) {
+                String state = applied.get(migration.getVersion());
+                System.out.println(migration + ": " + (state == null ? "pending" : "applied " + state));
+            }
+        } finally {
+            dao.closeConnection();
+        }
+    }
+}
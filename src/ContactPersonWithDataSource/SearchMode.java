@@ -0,0 +1,10 @@
+package ContactPersonWithDataSource;
+
+public enum SearchMode {
+    // name LIKE '%term%', scans the whole table
+    SUBSTRING,
+    // name LIKE 'term%', an index range scan on idx_contact_name
+    PREFIX,
+    // Same results as SUBSTRING, narrowed first through the ngram FULLTEXT index ft_contact_name
+    FULLTEXT
+}
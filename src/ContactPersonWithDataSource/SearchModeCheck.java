@@ -0,0 +1,76 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Checks that FULLTEXT and PREFIX searches return what the equivalent LIKE returns, for names with letters the
+// default InnoDB stopword list holds ("a", "i"). Runs against the database of file.properties and removes its
+// rows afterwards. Exits with status 1 when a check fails.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.SearchModeCheck
+public class SearchModeCheck {
+    private static final List<String> NAMES = List.of("Ahmed Ali", "Ali Hassan", "Maria Ibrahim", "Omar Sherif",
+            "Bob Lee", "Nour El-Din");
+    private static final List<String> TERMS = List.of("Ali", "ali", "Ibr", "ria", "med A", "Omar", "Bob", "Lee",
+            "El-D", "zz");
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Search Mode Check ===\n");
+        ContactPersonDAO dao = new ContactPersonDAO();
+        try {
+            dao.createContactTable();
+            List<ContactPerson> contacts = new ArrayList<>();
+            for (String name : NAMES) {
+                ContactPerson person = new ContactPerson();
+                person.setName(name);
+                person.setNickName("search-mode-check");
+                contacts.add(person);
+            }
+            dao.insertContacts(contacts);
+
+            for (String term : TERMS) {
+                Set<Integer> substring = idsOf(dao.getContactsForName(term));
+                check("FULLTEXT \"" + term + "\" matches SUBSTRING (" + substring.size() + " rows)",
+                        substring.equals(idsOf(dao.getContactsForName(term, SearchMode.FULLTEXT))));
+            }
+            for (String term : TERMS) {
+                Set<Integer> prefix = new TreeSet<>();
+                for (ContactPerson person : dao.getContactsForName(term)) {
+                    if (person.getName().regionMatches(true, 0, term, 0, term.length())) {
+                        prefix.add(person.getId());
+                    }
+                }
+                check("PREFIX \"" + term + "\" matches names starting with it (" + prefix.size() + " rows)",
+                        prefix.equals(idsOf(dao.getContactsForName(term, SearchMode.PREFIX))));
+            }
+        } finally {
+            try (Connection conn = dao.getPool().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM ContactPerson WHERE nickname = 'search-mode-check'");
+            }
+            dao.closeConnection();
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Set<Integer> idsOf(List<ContactPerson> contacts) {
+        Set<Integer> ids = new TreeSet<>();
+        contacts.forEach(person -> ids.add(person.getId()));
+        return ids;
+    }
+
+    private static void check(String description, boolean passed) {
+        System.out.println((passed ? "\u2713 " : "\u2717 ") + description);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ContactPersonWithDataSource;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Insert throughput of ShardedContactPersonDAO over the first 1, 2, 4... databases of shards.properties, with
+// the same writers and rows each time, then the latency of an id lookup and of a scatter-gather search.
+// The shards empty their ContactPerson tables before every run. The default shards.properties puts every
+// shard on the local server, which shares one disk and one redo log, so the gain shown is from spreading
+// commits and index maintenance over tables; shards on separate servers scale further.
+public class ShardBenchmark {
+    private static final int WRITERS = 8;
+    private static final int BATCHES_PER_WRITER = 20;
+    private static final int ROWS_PER_BATCH = 250;
+    private static final int LOOKUPS = 500;
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = ContactPersonDAO.loadProperties(args.length > 0 ? args[0]
+                : "src/ContactPersonWithDataSource/shards.properties");
+        List<String> urls = new ArrayList<>(Arrays.asList(properties.getProperty("SHARD_URLS").split(",")));
+        System.out.println("=== Shard Benchmark (" + WRITERS + " writers, "
+                + WRITERS * BATCHES_PER_WRITER * ROWS_PER_BATCH + " rows per run) ===\n");
+
+        double baseline = 0;
+        for (int shardCount = 1; shardCount <= urls.size(); shardCount *= 2) {
+            Properties runProperties = new Properties();
+            runProperties.putAll(properties);
+            runProperties.setProperty("SHARD_URLS", String.join(",", urls.subList(0, shardCount)));
+            // Range bounds belong to the full shard list, and range sharding sends new rows to one shard anyway
+            runProperties.setProperty("SHARDING", "hash");
+            try (ShardedContactPersonDAO dao = new ShardedContactPersonDAO(runProperties)) {
+                if (!dao.createContactTable()) {
+                    throw new IllegalStateException("Could not create the sharded table");
+                }
+                for (ContactPersonDAO shard : dao.getShards()) {
+                    try (Connection conn = shard.getPool().getConnection();
+                         Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("TRUNCATE TABLE ContactPerson");
+                    }
+                }
+
+                long start = System.nanoTime();
+                List<Integer> ids = runWriters(dao);
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                double throughput = ids.size() / seconds;
+                if (shardCount == 1) {
+                    baseline = throughput;
+                }
+                System.out.printf("shards=%d  rows/s=%10.1f  speedup=%5.2fx  per shard=%s%n", shardCount,
+                        throughput, throughput / baseline, Arrays.toString(dao.countContactsPerShard()));
+
+                check("every row stored once under a unique id",
+                        new HashSet<>(ids).size() == ids.size() && dao.countContacts() == ids.size());
+                measureReads(dao, ids);
+                System.out.println();
+            }
+        }
+    }
+
+    // Every writer inserts its batches through the sharded DAO, which splits each batch over the shards
+    private static List<Integer> runWriters(ShardedContactPersonDAO dao) throws Exception {
+        String runId = "shard-" + System.nanoTime() + "-";
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                String writerPrefix = runId + w + "-";
+                results.add(executor.submit(() -> {
+                    List<Integer> ids = new ArrayList<>();
+                    for (int batch = 0; batch < BATCHES_PER_WRITER; batch++) {
+                        List<ContactPerson> contacts = new ArrayList<>();
+                        for (int i = 0; i < ROWS_PER_BATCH; i++) {
+                            ContactPerson person = new ContactPerson();
+                            person.setName(writerPrefix + batch + "-" + i);
+                            person.setCellphone("010" + (10_000_000 + batch * ROWS_PER_BATCH + i));
+                            person.setMail(writerPrefix + batch + "-" + i + "@example.com");
+                            contacts.add(person);
+                        }
+                        BulkInsertResult result = dao.insertContacts(contacts);
+                        if (!result.getFailures().isEmpty()) {
+                            throw new IllegalStateException(result.getFailures().get(0).toString());
+                        }
+                        ids.addAll(result.getGeneratedIds());
+                    }
+                    return ids;
+                }));
+            }
+            List<Integer> ids = new ArrayList<>();
+            for (Future<List<Integer>> result : results) {
+                ids.addAll(result.get());
+            }
+            return ids;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void measureReads(ShardedContactPersonDAO dao, List<Integer> ids) {
+        Set<Integer> sample = new HashSet<>();
+        long start = System.nanoTime();
+        boolean found = true;
+        for (int i = 0; i < LOOKUPS; i++) {
+            int id = ids.get((int) ((long) i * ids.size() / LOOKUPS));
+            ContactPerson contact = dao.getContactById(id);
+            found &= contact != null && contact.getId() == id;
+            sample.add(id);
+        }
+        double lookupMicros = (System.nanoTime() - start) / 1000.0 / LOOKUPS;
+
+        start = System.nanoTime();
+        // Batch 1 of writer 0, whose rows are on every shard
+        ShardedReadResult search = dao.getContactsForName("-0-1-");
+        List<ContactPerson> matches = search.getContacts();
+        double searchMillis = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.printf("          getContactById %8.1f us   getContactsForName %8.1f ms (%d rows)%n",
+                lookupMicros, searchMillis, matches.size());
+        check(sample.size() + " id lookups each found their row on one shard", found);
+        check("search gathered the whole batch from all shards", search.isComplete() && matches.size() == ROWS_PER_BATCH);
+    }
+
+    private static void check(String description, boolean passed) {
+        System.out.println("          " + (passed ? "\u2713 " : "\u2717 ") + description);
+    }
+}
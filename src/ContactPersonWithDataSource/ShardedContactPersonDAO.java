@@ -0,0 +1,384 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// ContactPerson rows spread over several databases, each reached through its own ContactPersonDAO. A contact
+// lives on the shard its id maps to, so inserts, updates and id lookups touch one shard, and writes to
+// different shards run side by side on different connections. getContacts(), getContactsForName() and
+// countContacts() ask every shard at once and merge the answers; the searches return the rows of the shards
+// that answered together with the errors of those that did not.
+//
+// Ids come from an IdBlockAllocator on shard 0 rather than from AUTO_INCREMENT, which would hand out the
+// same ids on every shard, so rows must be inserted through this class. The shard of an id depends on the
+// number of shards: with HASH partitioning, adding a shard moves most rows and there is no rebalancing, so
+// use RANGE partitioning and add a bound above the highest id to grow a sharded table in place.
+public class ShardedContactPersonDAO implements AutoCloseable {
+    private static final String ID_SEQUENCE = "ContactPerson";
+    private static final Comparator<ContactPerson> BY_ID = Comparator.comparingInt(ContactPerson::getId);
+    // Names compare like the name column's collation, so the merge keeps the order each shard's ORDER BY name
+    // gives: "alice" and "Alice" are equal and ordered by id, and accented names sort with their plain letters
+    private static final Comparator<ContactPerson> BY_NAME = Comparator.comparing(ContactPerson::getName,
+            ContactPersonDAO.newKeyCollator()).thenComparingInt(ContactPerson::getId);
+
+    public enum Partitioning {
+        // Ids scattered over all shards, so every shard takes its share of new rows
+        HASH,
+        // Shard i holds the ids below SHARD_RANGE_BOUNDS[i], the last shard everything above; new rows all go
+        // to the last shard, but a shard can be added without moving rows
+        RANGE
+    }
+
+    private final List<ContactPersonDAO> shards;
+    private final Partitioning partitioning;
+    private final int[] rangeBounds;
+    private final IdBlockAllocator ids;
+    private final ExecutorService executor;
+
+    public ShardedContactPersonDAO() {
+        this("src/ContactPersonWithDataSource/shards.properties");
+    }
+
+    public ShardedContactPersonDAO(String propertiesPath) {
+        this(ContactPersonDAO.loadProperties(propertiesPath));
+    }
+
+    // SHARD_URLS lists one database per shard; every other setting applies to each shard's ContactPersonDAO
+    public ShardedContactPersonDAO(Properties properties) {
+        List<String> urls = new ArrayList<>();
+        for (String url : properties.getProperty("SHARD_URLS", "").split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("SHARD_URLS lists no shards");
+        }
+        partitioning = Partitioning.valueOf(properties.getProperty("SHARDING", "hash").trim().toUpperCase());
+        rangeBounds = parseRangeBounds(properties.getProperty("SHARD_RANGE_BOUNDS", ""), urls.size());
+
+        shards = new ArrayList<>();
+        String metricsName = properties.getProperty("METRICS_NAME", "default");
+        for (int i = 0; i < urls.size(); i++) {
+            Properties shardProperties = new Properties();
+            shardProperties.putAll(properties);
+            shardProperties.setProperty("MYSQL_DB_URL", urls.get(i));
+            // JMX names must differ per shard
+            shardProperties.setProperty("METRICS_NAME", metricsName + "-shard" + i);
+            shards.add(new ContactPersonDAO(shardProperties));
+        }
+        ids = new IdBlockAllocator(shards.get(0).getPool(), ID_SEQUENCE,
+                Integer.parseInt(properties.getProperty("ID_BLOCK_SIZE", "1000")));
+
+        // Every shard task holds one connection, so more threads than connections would only wait in the pools
+        int threads = 0;
+        for (ContactPersonDAO shard : shards) {
+            threads += shard.getPool().getMaxSize();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ShardedContactPersonDAO-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private int[] parseRangeBounds(String value, int shardCount) {
+        if (partitioning != Partitioning.RANGE) {
+            return new int[0];
+        }
+        String[] parts = value.split(",");
+        if (value.isBlank() || parts.length != shardCount - 1) {
+            throw new IllegalArgumentException("SHARD_RANGE_BOUNDS needs " + (shardCount - 1)
+                    + " bounds for " + shardCount + " shards, got \"" + value + "\"");
+        }
+        int[] bounds = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            bounds[i] = Integer.parseInt(parts[i].trim());
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("SHARD_RANGE_BOUNDS must increase, got \"" + value + "\"");
+            }
+        }
+        return bounds;
+    }
+
+    public List<ContactPersonDAO> getShards() {
+        return shards;
+    }
+
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+
+    public IdBlockAllocator getIdAllocator() {
+        return ids;
+    }
+
+    public int getShardIndex(int id) {
+        if (partitioning == Partitioning.RANGE) {
+            int shard = 0;
+            while (shard < rangeBounds.length && id >= rangeBounds[shard]) {
+                shard++;
+            }
+            return shard;
+        }
+        // Mixed first so that ids handed out in blocks do not fall into the shards in a pattern
+        return Math.floorMod(mix(id), shards.size());
+    }
+
+    public ContactPersonDAO getShard(int id) {
+        return shards.get(getShardIndex(id));
+    }
+
+    // The finalizer of MurmurHash3
+    private static int mix(int value) {
+        value ^= value >>> 16;
+        value *= 0x85ebca6b;
+        value ^= value >>> 13;
+        value *= 0xc2b2ae35;
+        value ^= value >>> 16;
+        return value;
+    }
+
+    // Creates the table on every shard, then the id sequence, started above the highest id already stored
+    public boolean createContactTable() {
+        List<Callable<Boolean>> calls = new ArrayList<>();
+        for (ContactPersonDAO shard : shards) {
+            calls.add(shard::createContactTable);
+        }
+        boolean created = !runOnShards(calls).contains(false);
+        if (!created) {
+            return false;
+        }
+        int maxId = 0;
+        for (ContactPersonDAO shard : shards) {
+            int[] range = shard.getIdRange();
+            if (range != null) {
+                maxId = Math.max(maxId, range[1]);
+            }
+        }
+        try {
+            ids.createSequence(maxId + 1);
+            return true;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // The contact gets a new id whatever it held before, and is written to that id's shard
+    public boolean insertContactPerson(ContactPerson person) {
+        try {
+            person.setId(ids.nextId());
+            return getShard(person.getId()).insertContactsWithIds(List.of(person)).getInsertedCount() > 0;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public BulkInsertResult insertContacts(Stream<ContactPerson> contacts) {
+        return insertContacts(contacts::iterator);
+    }
+
+    // Gives every contact a new id, then inserts each shard's contacts in parallel, in chunks as
+    // ContactPersonDAO.insertContacts() does. Failure row indexes refer to the input order. If a shard fails
+    // as a whole, the exception is thrown once all shards have finished; chunks committed elsewhere stay.
+    public BulkInsertResult insertContacts(Iterable<ContactPerson> contacts) {
+        List<ContactPerson> input = new ArrayList<>();
+        List<List<ContactPerson>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (ContactPerson person : contacts) {
+            person.setId(ids.nextId());
+            input.add(person);
+            byShard.get(getShardIndex(person.getId())).add(person);
+        }
+
+        List<Callable<BulkInsertResult>> calls = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            if (!byShard.get(i).isEmpty()) {
+                ContactPersonDAO shard = shards.get(i);
+                List<ContactPerson> shardContacts = byShard.get(i);
+                calls.add(() -> shard.insertContactsWithIds(shardContacts));
+            }
+        }
+        List<BulkInsertResult> shardResults = runOnShards(calls);
+
+        Map<ContactPerson, Integer> rowIndexes = new IdentityHashMap<>();
+        for (int i = 0; i < input.size(); i++) {
+            rowIndexes.put(input.get(i), i);
+        }
+        BulkInsertResult result = new BulkInsertResult();
+        List<BulkInsertResult.Failure> failures = new ArrayList<>();
+        for (BulkInsertResult shardResult : shardResults) {
+            failures.addAll(shardResult.getFailures());
+            for (int chunk = 0; chunk < shardResult.getChunkCount(); chunk++) {
+                result.addChunk();
+            }
+        }
+        failures.sort(Comparator.comparingInt(failure -> rowIndexes.get(failure.getPerson())));
+        for (BulkInsertResult.Failure failure : failures) {
+            result.addFailure(rowIndexes.remove(failure.getPerson()), failure.getPerson(), failure.getError());
+        }
+        for (ContactPerson person : input) {
+            if (rowIndexes.containsKey(person)) {
+                result.addInserted(person, person.getId());
+            }
+        }
+        return result;
+    }
+
+    public ContactPerson getContactById(int id) {
+        return getShard(id).getContactById(id);
+    }
+
+    public boolean updateContactPerson(ContactPerson person) {
+        return getShard(person.getId()).updateContactPerson(person);
+    }
+
+    // Each shard updates its own contacts, in parallel; see ContactPersonDAO.updateContacts()
+    public UpsertResult updateContacts(Collection<ContactPerson> contacts) {
+        List<List<ContactPerson>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (ContactPerson person : contacts) {
+            byShard.get(getShardIndex(person.getId())).add(person);
+        }
+        List<Callable<UpsertResult>> calls = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            if (!byShard.get(i).isEmpty()) {
+                ContactPersonDAO shard = shards.get(i);
+                List<ContactPerson> shardContacts = byShard.get(i);
+                calls.add(() -> shard.updateContacts(shardContacts));
+            }
+        }
+        UpsertResult result = new UpsertResult();
+        for (UpsertResult shardResult : runOnShards(calls)) {
+            result.add(shardResult);
+        }
+        result.finish();
+        return result;
+    }
+
+    // In id order
+    public ShardedReadResult getContacts() {
+        return gather(ContactPersonDAO::getContacts, BY_ID);
+    }
+
+    // In id order
+    public ShardedReadResult getContactsForName(String name) {
+        return gather(shard -> shard.getContactsForName(name), BY_ID);
+    }
+
+    // In the order ContactPersonDAO gives for the mode: name then id for PREFIX, id otherwise
+    public ShardedReadResult getContactsForName(String name, SearchMode mode) {
+        return gather(shard -> shard.getContactsForName(name, mode), mode == SearchMode.PREFIX ? BY_NAME : BY_ID);
+    }
+
+    public long countContacts() {
+        long count = 0;
+        for (long shardCount : countContactsPerShard()) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    public long[] countContactsPerShard() {
+        List<Callable<Long>> calls = new ArrayList<>();
+        for (ContactPersonDAO shard : shards) {
+            calls.add(shard::countContacts);
+        }
+        List<Long> counts = runOnShards(calls);
+        long[] perShard = new long[counts.size()];
+        for (int i = 0; i < perShard.length; i++) {
+            perShard[i] = counts.get(i);
+        }
+        return perShard;
+    }
+
+    // Runs the query on every shard at once. A shard that fails contributes no rows; its error is kept in the
+    // result instead of discarding the rows of the others.
+    private ShardedReadResult gather(Function<ContactPersonDAO, List<ContactPerson>> query,
+                                     Comparator<ContactPerson> order) {
+        List<Future<List<ContactPerson>>> futures = new ArrayList<>();
+        for (ContactPersonDAO shard : shards) {
+            // Rethrown rather than printed, so a failed shard is told apart from one without matches
+            futures.add(executor.submit(() -> shard.callRethrowingErrors(() -> query.apply(shard))));
+        }
+        List<ContactPerson> contacts = new ArrayList<>();
+        Map<Integer, RuntimeException> failures = new TreeMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                contacts.addAll(futures.get(i).get());
+            } catch (ExecutionException e) {
+                failures.put(i, e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new RuntimeException(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.put(i, new RuntimeException(e));
+            }
+        }
+        // Each shard's rows normally come in order already, and the merge sort takes sorted runs in close to linear time
+        contacts.sort(order);
+        return new ShardedReadResult(contacts, failures);
+    }
+
+    // Results in the order of the calls. A single call runs on the caller's thread; otherwise all calls run on
+    // the executor and are waited for before the first failure, if any, is rethrown.
+    private <T> List<T> runOnShards(List<Callable<T>> calls) {
+        List<T> results = new ArrayList<>();
+        try {
+            if (calls.size() == 1) {
+                results.add(calls.get(0).call());
+                return results;
+            }
+            RuntimeException failure = null;
+            for (Future<T> future : executor.invokeAll(calls)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                                : new RuntimeException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (ContactPersonDAO shard : shards) {
+            shard.closeConnection();
+        }
+    }
+}
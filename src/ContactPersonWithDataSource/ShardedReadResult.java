@@ -0,0 +1,36 @@
+package ContactPersonWithDataSource;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Rows a ShardedContactPersonDAO search gathered from its shards, merged in order. A shard whose read failed
+// contributes no rows and its error is kept by shard index, so callers can use a partial answer and still
+// see that it is incomplete.
+public class ShardedReadResult {
+    private final List<ContactPerson> contacts;
+    private final Map<Integer, RuntimeException> failures;
+
+    ShardedReadResult(List<ContactPerson> contacts, Map<Integer, RuntimeException> failures) {
+        this.contacts = contacts;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public List<ContactPerson> getContacts() {
+        return contacts;
+    }
+
+    // Errors of the shards that did not answer, by shard index
+    public Map<Integer, RuntimeException> getFailures() {
+        return failures;
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedReadResult[rows=" + contacts.size() + ", failedShards=" + failures.keySet() + "]";
+    }
+}
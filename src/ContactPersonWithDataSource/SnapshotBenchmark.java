@@ -0,0 +1,81 @@
+package ContactPersonWithDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Warm-start cost: a full table scan through JDBC against opening a snapshot of the same rows, then
+// decoding it fully, decoding one column, and random id lookups. Also an incremental refresh after updates.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.SnapshotBenchmark
+public class SnapshotBenchmark {
+    private static final int LOOKUPS = 100_000;
+    private static final int UPDATED_ROWS = 1_000;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Snapshot Benchmark ===\n");
+        ContactPersonDAO dao = new ContactPersonDAO();
+        Path file = Files.createTempFile("contacts", ".snapshot");
+        try {
+            dao.createContactTable();
+            long start = System.nanoTime();
+            long scanned;
+            try (Stream<ContactPerson> contacts = dao.streamContacts()) {
+                scanned = contacts.count();
+            }
+            if (scanned == 0) {
+                System.out.println("ContactPerson is empty; run BulkInsertBenchmark first.");
+                return;
+            }
+            report("JDBC full scan", scanned, start);
+
+            start = System.nanoTime();
+            ContactSnapshot snapshot = ContactSnapshot.create(dao, file);
+            report("Snapshot create", snapshot.size(), start);
+            System.out.printf("Snapshot size: %.1f MB%n", Files.size(file) / 1e6);
+            snapshot.describeColumns().forEach((column, description) -> System.out.println("  " + column + ": " + description));
+            System.out.println();
+
+            start = System.nanoTime();
+            snapshot = ContactSnapshot.open(file);
+            report("Snapshot open", snapshot.size(), start);
+
+            start = System.nanoTime();
+            long decoded;
+            try (Stream<ContactPerson> contacts = snapshot.stream()) {
+                decoded = contacts.count();
+            }
+            report("Snapshot full decode", decoded, start);
+
+            start = System.nanoTime();
+            try (Stream<ContactPerson> contacts = ContactSnapshot.open(file).stream("profession")) {
+                decoded = contacts.count();
+            }
+            report("Snapshot profession only", decoded, start);
+
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                snapshot.getContactById(snapshot.getId(random.nextInt(snapshot.size())));
+            }
+            report("Snapshot id lookups", LOOKUPS, start);
+
+            // Touches the last UPDATED_ROWS rows so the refresh has something to read
+            int afterId = snapshot.getId(Math.max(0, snapshot.size() - UPDATED_ROWS - 1));
+            dao.bulkUpdateInDatabase("mail = CONCAT('refreshed-', id, '-', mail)", afterId, null);
+            start = System.nanoTime();
+            ContactSnapshot refreshed = snapshot.refresh(dao, file);
+            report("Snapshot refresh", refreshed.size(), start);
+        } finally {
+            Files.deleteIfExists(file);
+            dao.closeConnection();
+        }
+    }
+
+    private static void report(String label, long rows, long startNanos) {
+        double millis = (System.nanoTime() - startNanos) / 1e6;
+        System.out.printf("%-26s %10d rows %10.1f ms %14.0f rows/s%n", label, rows, millis, rows / (millis / 1000));
+    }
+}
@@ -0,0 +1,205 @@
+package ContactPersonWithDataSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// LRU cache of PreparedStatements for one physical connection, keyed by SQL text.
+// A connection is only used by one borrower at a time, so the cache is not synchronized.
+// Every statement handed out belongs to the borrow it was prepared in: endBorrow() closes the ones still out,
+// so a handle kept past the borrow cannot reach a connection lent to someone else, and a handle that was never
+// closed does not keep its SQL checked out for good.
+class StatementCache {
+    private final Connection physical;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private final List<Handle> checkedOut = new ArrayList<>();
+    // Counts the borrows of the connection; a handle from an earlier borrow is stale
+    private volatile int borrow;
+
+    StatementCache(Connection physical, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                eldest.getValue().release();
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        if (maxSize <= 0) {
+            return physical.prepareStatement(sql);
+        }
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+            cached.inUse = true;
+            return checkOut(cached, cached.statement, owner);
+        }
+        misses.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (cached != null) {
+            // The cached copy is still open elsewhere in this borrow; hand out a one-off statement
+            return checkOut(null, statement, owner);
+        }
+        cached = new CachedStatement(sql, statement);
+        statements.put(sql, cached);
+        cached.inUse = true;
+        return checkOut(cached, statement, owner);
+    }
+
+    private PreparedStatement checkOut(CachedStatement cached, PreparedStatement statement, Connection owner) {
+        Handle handle = new Handle(cached, statement, owner, borrow);
+        checkedOut.add(handle);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                handle);
+    }
+
+    // Called by the pool when the connection is handed back: checks in or closes every statement still out
+    void endBorrow() {
+        borrow++;
+        for (Handle handle : new ArrayList<>(checkedOut)) {
+            handle.close();
+        }
+        checkedOut.clear();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    void close() {
+        for (CachedStatement cached : new ArrayList<>(statements.values())) {
+            cached.evict();
+        }
+        statements.clear();
+    }
+
+    private class CachedStatement {
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        private void checkIn() {
+            inUse = false;
+            try {
+                if (evicted || statement.isClosed()) {
+                    evict();
+                    return;
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                evict();
+            }
+        }
+
+        private void evict() {
+            statements.remove(sql, this);
+            release();
+        }
+
+        private void release() {
+            evicted = true;
+            if (inUse) {
+                // Closed by checkIn() once the current user is done with it
+                return;
+            }
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // The statement is being thrown away anyway
+            }
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+        // null for a one-off statement, which is closed instead of checked in
+        private final CachedStatement cached;
+        private final PreparedStatement statement;
+        private final Connection owner;
+        private final int ownerBorrow;
+        private volatile boolean closed;
+
+        private Handle(CachedStatement cached, PreparedStatement statement, Connection owner, int ownerBorrow) {
+            this.cached = cached;
+            this.statement = statement;
+            this.owner = owner;
+            this.ownerBorrow = ownerBorrow;
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            checkedOut.remove(this);
+            if (cached != null) {
+                cached.checkIn();
+                return;
+            }
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // The statement is being thrown away anyway
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (ownerBorrow == borrow) {
+                        close();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || ownerBorrow != borrow || statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return (cached != null ? "Cached[" : "Uncached[") + statement + "]";
+                default:
+                    if (closed || ownerBorrow != borrow) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
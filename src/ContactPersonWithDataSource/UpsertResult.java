@@ -0,0 +1,85 @@
+package ContactPersonWithDataSource;
+
+// Outcome of upsertContacts() and updateContacts(): how many rows were written and how many were left alone
+public class UpsertResult {
+    private final long startNanos = System.nanoTime();
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private int missing;
+    private long columnsWritten;
+    private int chunkCount;
+    private long elapsedNanos;
+
+    void addInserted() {
+        inserted++;
+    }
+
+    void addUpdated(int columns) {
+        updated++;
+        columnsWritten += columns;
+    }
+
+    void addUnchanged() {
+        unchanged++;
+    }
+
+    void addMissing() {
+        missing++;
+    }
+
+    void addChunk() {
+        chunkCount++;
+    }
+
+    // Adds the counts of another result, such as one shard's part of a ShardedContactPersonDAO write
+    void add(UpsertResult other) {
+        inserted += other.inserted;
+        updated += other.updated;
+        unchanged += other.unchanged;
+        missing += other.missing;
+        columnsWritten += other.columnsWritten;
+        chunkCount += other.chunkCount;
+    }
+
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public int getInsertedCount() {
+        return inserted;
+    }
+
+    public int getUpdatedCount() {
+        return updated;
+    }
+
+    // Rows that already held every value, so nothing was written for them
+    public int getUnchangedCount() {
+        return unchanged;
+    }
+
+    // updateContacts() only: contacts whose id is not in the table
+    public int getMissingCount() {
+        return missing;
+    }
+
+    // Columns written by the updates, out of the 10 a full-row update would write per row
+    public long getColumnsWritten() {
+        return columnsWritten;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1_000_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UpsertResult[inserted=%d, updated=%d, unchanged=%d, missing=%d, columnsWritten=%d, chunks=%d, seconds=%.2f]",
+                inserted, updated, unchanged, missing, columnsWritten, chunkCount, getElapsedSeconds());
+    }
+}
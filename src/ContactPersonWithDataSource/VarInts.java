@@ -0,0 +1,71 @@
+package ContactPersonWithDataSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Variable-length encodings shared by the binary export and snapshot formats. Unsigned values are
+// written 7 bits per byte, low bits first, with the high bit set on every byte but the last.
+final class VarInts {
+
+    private VarInts() {
+    }
+
+    static void writeUnsigned(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readUnsigned(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    // Zigzag keeps small negative numbers short: 0, -1, 1, -2, ... become 0, 1, 2, 3, ...
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeSigned(OutputStream out, long value) throws IOException {
+        writeUnsigned(out, zigzag(value));
+    }
+
+    static long readSigned(ByteBuffer in) {
+        return unzigzag(readUnsigned(in));
+    }
+
+    // Length + 1 followed by the UTF-8 bytes; a length of 0 stands for null
+    static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.write(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsigned(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = (int) readUnsigned(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// One insert per event from many ingestion threads: insertContactPerson(), which commits every row on its own,
+// against queueContactPerson() with write-behind, where the threads share group commits. Each thread waits for
+// its row to be committed before sending the next, so both runs give the same durability. A last run sends
+// without waiting against a small queue to show backpressure.
+//
+// Usage: java -cp ".:mysql-connector-j-9.4.0.jar" ContactPersonWithDataSource.WriteBehindBenchmark [threads] [rows per thread]
+public class WriteBehindBenchmark {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rowsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Properties properties = ContactPersonDAO.loadProperties("src/ContactPersonWithDataSource/file.properties");
+        System.out.println("=== Write-Behind Benchmark (" + threads + " threads, " + rowsPerThread + " rows each) ===\n");
+        System.out.printf("%-34s %10s %10s %10s %10s%n", "run", "rows/s", "p50 us", "p99 us", "max us");
+
+        properties.setProperty("WRITE_BEHIND_QUEUE_SIZE", "0");
+        ContactPersonDAO dao = new ContactPersonDAO(properties);
+        try {
+            dao.createContactTable();
+            run("insertContactPerson", threads, rowsPerThread, person -> {
+                if (!dao.insertContactPerson(person)) {
+                    throw new IllegalStateException("Insert failed for " + person.getName());
+                }
+            });
+        } finally {
+            dao.closeConnection();
+        }
+
+        properties.setProperty("WRITE_BEHIND_QUEUE_SIZE", "10000");
+        ContactPersonDAO writeBehindDao = new ContactPersonDAO(properties);
+        try {
+            run("queueContactPerson + join()", threads, rowsPerThread,
+                    person -> writeBehindDao.queueContactPerson(person).join());
+            System.out.println("\n" + writeBehindDao.getWriteBehindQueue());
+        } finally {
+            writeBehindDao.closeConnection();
+        }
+
+        // Producers that do not wait fill a small queue faster than it drains and get turned away
+        properties.setProperty("WRITE_BEHIND_QUEUE_SIZE", "1000");
+        properties.setProperty("WRITE_BEHIND_OFFER_TIMEOUT_MS", "0");
+        ContactPersonDAO smallQueueDao = new ContactPersonDAO(properties);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        String runId = "write-behind-" + System.nanoTime() + "-";
+        for (int i = 0; i < 20_000; i++) {
+            ContactPerson person = new ContactPerson();
+            person.setName(runId + i);
+            futures.add(smallQueueDao.queueContactPerson(person));
+        }
+        WriteBehindQueue queue = smallQueueDao.getWriteBehindQueue();
+        // closeConnection() writes whatever is still queued before it returns
+        smallQueueDao.closeConnection();
+        long written = futures.stream().filter(future -> !future.isCompletedExceptionally()).count();
+        System.out.println("fire and forget, queue of 1000: " + written + " written, "
+                + queue.getRejectedCount() + " rejected, all futures done: "
+                + futures.stream().allMatch(CompletableFuture::isDone));
+    }
+
+    private interface Insert {
+        void insert(ContactPerson person) throws Exception;
+    }
+
+    private static void run(String name, int threads, int rowsPerThread, Insert insert) throws Exception {
+        String runId = "write-behind-" + System.nanoTime() + "-";
+        LatencyHistogram latency = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String threadPrefix = runId + t + "-";
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < rowsPerThread; i++) {
+                        ContactPerson person = new ContactPerson();
+                        person.setName(threadPrefix + i);
+                        person.setMail(threadPrefix + i + "@example.com");
+                        long callStart = System.nanoTime();
+                        insert.insert(person);
+                        latency.record(System.nanoTime() - callStart);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("%-34s %10.1f %10d %10d %10d%n", name, threads * rowsPerThread / seconds,
+                latency.getValueAtPercentile(0.50) / 1000, latency.getValueAtPercentile(0.99) / 1000,
+                latency.getMax() / 1000);
+    }
+}
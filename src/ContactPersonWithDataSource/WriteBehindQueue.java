@@ -0,0 +1,224 @@
+package ContactPersonWithDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Write-behind buffer for ContactPersonDAO.queueContactPerson(). Contacts wait in a lock-free queue and
+// writer threads insert them with insertContacts(), many rows per commit, so concurrent callers share one
+// round trip and one fsync instead of paying for their own. A writer takes a batch once batchSize contacts
+// are waiting or the oldest has waited maxDelayMillis, whichever comes first.
+//
+// A contact's future completes with its id only after the batch holding it is committed, or fails with
+// the row's error, so a caller that waits on it has the same guarantee as a synchronous insert. At most
+// capacity contacts are queued; beyond that queueing waits up to offerTimeoutMillis for room and then
+// fails the future with RejectedExecutionException.
+public class WriteBehindQueue implements AutoCloseable {
+    private final ContactPersonDAO dao;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long offerTimeoutMillis;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    // Free slots of the queue; tryAcquire() is a compare-and-set as long as there is room
+    private final Semaphore room;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    // Threads in flush(); while there are any, writers take partial batches without waiting out the delay
+    private final AtomicInteger flushing = new AtomicInteger();
+    private final List<Thread> writers = new ArrayList<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private volatile boolean closed;
+
+    public WriteBehindQueue(ContactPersonDAO dao, int capacity, int batchSize, long maxDelayMillis,
+                            int writerCount, long offerTimeoutMillis) {
+        this.dao = dao;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.room = new Semaphore(capacity);
+        for (int i = 0; i < writerCount; i++) {
+            Thread writer = new Thread(this::runWriter, "WriteBehindQueue-" + (i + 1));
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    // The future completes with the contact's id once it is committed. The contact must not be changed
+    // until then, as it is read on a writer thread.
+    public CompletableFuture<Integer> add(ContactPerson person) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("WriteBehindQueue is closed"));
+        }
+        try {
+            if (!room.tryAcquire() && !room.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejectedCount.incrementAndGet();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Write-behind queue full for " + offerTimeoutMillis + " ms"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        Entry entry = new Entry(person);
+        pending.incrementAndGet();
+        queue.add(entry);
+        if (closed && queue.remove(entry)) {
+            // close() came in between, and its writers may be gone already
+            room.release();
+            finished(1);
+            entry.future.completeExceptionally(new RejectedExecutionException("WriteBehindQueue is closed"));
+            return entry.future;
+        }
+        if (queued.incrementAndGet() == batchSize) {
+            // A full batch is waiting; don't let it sit out the delay
+            for (Thread writer : writers) {
+                LockSupport.unpark(writer);
+            }
+        }
+        return entry.future;
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Entry oldest = queue.peek();
+            if (oldest == null) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.parkNanos(this, maxDelayNanos);
+                continue;
+            }
+            long waitNanos = oldest.queuedNanos + maxDelayNanos - System.nanoTime();
+            if (queued.get() < batchSize && waitNanos > 0 && !closed && flushing.get() == 0) {
+                LockSupport.parkNanos(this, waitNanos);
+                continue;
+            }
+            Entry entry;
+            while (batch.size() < batchSize && (entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            queued.addAndGet(-batch.size());
+            room.release(batch.size());
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        List<ContactPerson> contacts = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            contacts.add(entry.person);
+        }
+        try {
+            BulkInsertResult result = dao.insertContacts(contacts);
+            boolean[] failed = new boolean[batch.size()];
+            for (BulkInsertResult.Failure failure : result.getFailures()) {
+                failed[failure.getRowIndex()] = true;
+                batch.get(failure.getRowIndex()).future.completeExceptionally(failure.getError());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (!failed[i]) {
+                    batch.get(i).future.complete(batch.get(i).person.getId());
+                }
+            }
+            writtenCount.addAndGet(result.getInsertedCount());
+        } catch (RuntimeException e) {
+            // insertContacts() failed as a whole; rows of chunks it committed before that are stored even
+            // though their futures fail too
+            for (Entry entry : batch) {
+                entry.future.completeExceptionally(e);
+            }
+        } finally {
+            batchCount.incrementAndGet();
+            finished(batch.size());
+        }
+    }
+
+    private void finished(int count) {
+        if (pending.addAndGet(-count) == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    // Waits until every contact queued so far, and any queued meanwhile, is written or has failed
+    public void flush() throws InterruptedException {
+        flushing.incrementAndGet();
+        try {
+            for (Thread writer : writers) {
+                LockSupport.unpark(writer);
+            }
+            synchronized (this) {
+                while (pending.get() > 0) {
+                    wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(maxDelayNanos)));
+                }
+            }
+        } finally {
+            flushing.decrementAndGet();
+        }
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    @Override
+    public String toString() {
+        long batches = getBatchCount();
+        return String.format("WriteBehindQueue[queued=%d, written=%d, batches=%d, avgBatch=%.1f, rejected=%d]",
+                getQueuedCount(), getWrittenCount(), batches, batches == 0 ? 0.0 : (double) getWrittenCount() / batches,
+                getRejectedCount());
+    }
+
+    // Refuses new contacts, writes the queued ones and stops the writers. Queueing after close() fails at once.
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flush();
+            for (Thread writer : writers) {
+                LockSupport.unpark(writer);
+                writer.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Entry {
+        private final ContactPerson person;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final long queuedNanos = System.nanoTime();
+
+        private Entry(ContactPerson person) {
+            this.person = person;
+        }
+    }
+}
@@ -5,20 +5,38 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class ContactPersonDAO {
-    private Connection conn;
-    private Statement stmt;
     private String url;
     private String username;
     private String password;
+    private ConnectionPool pool;
+    private SlowQueryLog slowQueryLog;
 
     public ContactPersonDAO(String path, String url, String username, String password) {
+        this(path, url, username, password, 2, 10);
+    }
+
+    public ContactPersonDAO(String path, String url, String username, String password,
+                            int minPoolSize, int maxPoolSize) {
+        this(path, url, username, password, minPoolSize, maxPoolSize, null);
+    }
+
+    // With a SlowQueryLog every pooled connection is traced; the DAO closes the log in closeConnection()
+    public ContactPersonDAO(String path, String url, String username, String password,
+                            int minPoolSize, int maxPoolSize, SlowQueryLog slowQueryLog) {
         try {
             this.url = url;
             this.username = username;
             this.password = password;
+            this.slowQueryLog = slowQueryLog;
             Class.forName(path);
-            if (connect()) {
+            pool = new ConnectionPool(() -> {
+                Connection conn = DriverManager.getConnection(this.url, this.username, this.password);
+                return slowQueryLog != null ? TracingConnection.wrap(conn, slowQueryLog) : conn;
+            }, minPoolSize, maxPoolSize);
+            try (Connection conn = pool.getConnection()) {
                 System.out.println("Connected successfully to " + conn.toString());
+            } catch (SQLException e) {
+                e.printStackTrace();
             }
         } catch (ClassNotFoundException e) {
             throw new RuntimeException(e);
@@ -26,21 +44,18 @@ public class ContactPersonDAO {
     }
 
     void closeConnection() {
-        try {
-            stmt.close();
-            conn.close();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        pool.close();
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
         }
     }
 
-    private boolean connect() {
-        try {
-            conn = DriverManager.getConnection(url, username, password);
-            return true;
-        } catch (SQLException e) {
-            return false;
-        }
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
     }
 
     private ContactPerson createContactPerson(ResultSet resultSet) {
@@ -64,28 +79,26 @@ public class ContactPersonDAO {
     }
 
     public boolean createContactTable() {
-        try {
-            if (connect()) {
-                stmt = conn.createStatement();
-                // MySQL-compatible table creation SQL
-                String createTableSQL = "CREATE TABLE IF NOT EXISTS ContactPerson (" +
-                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "name VARCHAR(100) NOT NULL, " +
-                        "nickname VARCHAR(50), " +
-                        "address VARCHAR(200), " +
-                        "homePhone VARCHAR(20), " +
-                        "workPhone VARCHAR(20), " +
-                        "cellphone VARCHAR(20), " +
-                        "mail VARCHAR(100), " +
-                        "birthdate DATE, " +
-                        "website VARCHAR(100), " +
-                        "profession VARCHAR(100)" +
-                        ")";
-
-                stmt.executeUpdate(createTableSQL);
-                System.out.println("Table 'ContactPerson' created successfully or already exists.");
-                return true;
-            }
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            // MySQL-compatible table creation SQL
+            String createTableSQL = "CREATE TABLE IF NOT EXISTS ContactPerson (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(100) NOT NULL, " +
+                    "nickname VARCHAR(50), " +
+                    "address VARCHAR(200), " +
+                    "homePhone VARCHAR(20), " +
+                    "workPhone VARCHAR(20), " +
+                    "cellphone VARCHAR(20), " +
+                    "mail VARCHAR(100), " +
+                    "birthdate DATE, " +
+                    "website VARCHAR(100), " +
+                    "profession VARCHAR(100)" +
+                    ")";
+
+            stmt.executeUpdate(createTableSQL);
+            System.out.println("Table 'ContactPerson' created successfully or already exists.");
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -94,17 +107,13 @@ public class ContactPersonDAO {
 
     public List<ContactPerson> getContacts() {
         List<ContactPerson> contacts = new ArrayList<>();
-        try {
-            if (connect()) {
-                stmt = conn.createStatement();
-                String selectSQL = "SELECT * FROM ContactPerson";
-                ResultSet resultSet = stmt.executeQuery(selectSQL);
-
-                while (resultSet.next()) {
-                    ContactPerson contact = createContactPerson(resultSet);
-                    contacts.add(contact);
-                }
-                resultSet.close();
+        String selectSQL = "SELECT * FROM ContactPerson";
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet resultSet = stmt.executeQuery(selectSQL)) {
+            while (resultSet.next()) {
+                ContactPerson contact = createContactPerson(resultSet);
+                contacts.add(contact);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -114,19 +123,15 @@ public class ContactPersonDAO {
 
     public List<ContactPerson> getContactsForName(String name) {
         List<ContactPerson> contacts = new ArrayList<>();
-        try {
-            if (connect()) {
-                String selectSQL = "SELECT * FROM ContactPerson WHERE name LIKE ?";
-                PreparedStatement pstmt = conn.prepareStatement(selectSQL);
-                pstmt.setString(1, "%" + name + "%");
-                ResultSet resultSet = pstmt.executeQuery();
-
+        String selectSQL = "SELECT * FROM ContactPerson WHERE name LIKE ?";
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(selectSQL)) {
+            pstmt.setString(1, "%" + name + "%");
+            try (ResultSet resultSet = pstmt.executeQuery()) {
                 while (resultSet.next()) {
                     ContactPerson contact = createContactPerson(resultSet);
                     contacts.add(contact);
                 }
-                resultSet.close();
-                pstmt.close();
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -135,27 +140,23 @@ public class ContactPersonDAO {
     }
 
     public boolean insertContactPerson(ContactPerson person) {
-        try {
-            if (connect()) {
-                String insertSQL = "INSERT INTO ContactPerson (name, nickname, address, homePhone, workPhone, cellphone, mail, birthdate, website, profession) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-                PreparedStatement pstmt = conn.prepareStatement(insertSQL);
-
-                pstmt.setString(1, person.getName());
-                pstmt.setString(2, person.getNickName());
-                pstmt.setString(3, person.getAddress());
-                pstmt.setString(4, person.getHomePhone());
-                pstmt.setString(5, person.getWorkPhone());
-                pstmt.setString(6, person.getCellphone());
-                pstmt.setString(7, person.getMail());
-                pstmt.setDate(8,
-                        person.getBirthdate() != null ? new java.sql.Date(person.getBirthdate().getTime()) : null);
-                pstmt.setString(9, person.getWebsite());
-                pstmt.setString(10, person.getProfession());
-
-                int rowsAffected = pstmt.executeUpdate();
-                pstmt.close();
-                return rowsAffected > 0;
-            }
+        String insertSQL = "INSERT INTO ContactPerson (name, nickname, address, homePhone, workPhone, cellphone, mail, birthdate, website, profession) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
+            pstmt.setString(1, person.getName());
+            pstmt.setString(2, person.getNickName());
+            pstmt.setString(3, person.getAddress());
+            pstmt.setString(4, person.getHomePhone());
+            pstmt.setString(5, person.getWorkPhone());
+            pstmt.setString(6, person.getCellphone());
+            pstmt.setString(7, person.getMail());
+            pstmt.setDate(8,
+                    person.getBirthdate() != null ? new java.sql.Date(person.getBirthdate().getTime()) : null);
+            pstmt.setString(9, person.getWebsite());
+            pstmt.setString(10, person.getProfession());
+
+            int rowsAffected = pstmt.executeUpdate();
+            return rowsAffected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
         }
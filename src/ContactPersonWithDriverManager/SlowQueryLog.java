@@ -0,0 +1,207 @@
+package ContactPersonWithDriverManager;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Collects statements traced by TracingConnection that ran longer than the threshold. Query threads only
+// offer entries to a bounded buffer and never wait: when the buffer is full the entry is dropped and counted.
+// A background thread writes the entries and, if enabled, the EXPLAIN plan of slow SELECTs.
+public class SlowQueryLog implements AutoCloseable {
+    // A statement that keeps being slow is explained at most once per interval
+    private static final long EXPLAIN_INTERVAL_MILLIS = 60_000;
+
+    private final long thresholdNanos;
+    private final boolean redactParameters;
+    private final ConnectionPool.ConnectionFactory explainConnections;
+    private final ArrayBlockingQueue<Entry> buffer;
+    private final PrintStream out;
+    private final boolean closeOut;
+    private final Thread writer;
+    private final AtomicLong logged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    // Used by the writer thread only
+    private final Map<String, Long> lastExplained = new HashMap<>();
+    private Connection explainConnection;
+
+    // explainConnections opens untraced connections for EXPLAIN; pass null to log without plans.
+    // With closeOut the stream is closed together with the log.
+    public SlowQueryLog(long thresholdMillis, int bufferSize, PrintStream out, boolean closeOut,
+                        boolean redactParameters, ConnectionPool.ConnectionFactory explainConnections) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.out = out;
+        this.closeOut = closeOut;
+        this.redactParameters = redactParameters;
+        this.explainConnections = explainConnections;
+        writer = new Thread(this::drain, "SlowQueryLog-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    void record(String sql, Object[] parameters, long executeNanos, long fetchNanos, long rows) {
+        Entry entry = new Entry(sql, parameters, executeNanos, fetchNanos, rows);
+        if (closed || !buffer.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getLoggedCount() {
+        return logged.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    // Writes what is still buffered, then stops the writer thread
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!closed || !buffer.isEmpty()) {
+                Entry entry = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    write(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (explainConnection != null) {
+                try {
+                    explainConnection.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+            out.flush();
+            if (closeOut) {
+                out.close();
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        StringBuilder line = new StringBuilder();
+        line.append("[slow query] ").append(entry.timestamp)
+                .append(" thread=").append(entry.thread)
+                .append(String.format(" execute=%.1fms fetch=%.1fms", entry.executeNanos / 1e6, entry.fetchNanos / 1e6));
+        if (entry.rows >= 0) {
+            line.append(" rows=").append(entry.rows);
+        }
+        line.append(" sql=\"").append(entry.sql).append('"');
+        if (entry.parameters.length > 0) {
+            line.append(" params=").append(formatParameters(entry.parameters));
+        }
+        out.println(line);
+        if (explainConnections != null && entry.sql.trim().regionMatches(true, 0, "SELECT", 0, 6)) {
+            explain(entry);
+        }
+        logged.incrementAndGet();
+    }
+
+    private String formatParameters(Object[] parameters) {
+        StringBuilder formatted = new StringBuilder("[");
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                formatted.append(", ");
+            }
+            Object value = parameters[i];
+            if (value == null) {
+                formatted.append("NULL");
+            } else if (redactParameters) {
+                formatted.append('<').append(value.getClass().getSimpleName()).append('>');
+            } else if (value instanceof String) {
+                formatted.append('\'').append(value).append('\'');
+            } else {
+                formatted.append(value);
+            }
+        }
+        return formatted.append(']').toString();
+    }
+
+    private void explain(Entry entry) {
+        long now = System.currentTimeMillis();
+        Long last = lastExplained.get(entry.sql);
+        if (last != null && now - last < EXPLAIN_INTERVAL_MILLIS) {
+            return;
+        }
+        lastExplained.put(entry.sql, now);
+        try {
+            if (explainConnection == null) {
+                explainConnection = explainConnections.create();
+            }
+            try (PreparedStatement pstmt = explainConnection.prepareStatement("EXPLAIN " + entry.sql)) {
+                for (int i = 0; i < entry.parameters.length; i++) {
+                    pstmt.setObject(i + 1, entry.parameters[i]);
+                }
+                try (ResultSet plan = pstmt.executeQuery()) {
+                    ResultSetMetaData metaData = plan.getMetaData();
+                    while (plan.next()) {
+                        StringBuilder row = new StringBuilder("    EXPLAIN");
+                        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                            row.append(' ').append(metaData.getColumnLabel(i)).append('=').append(plan.getString(i));
+                        }
+                        out.println(row);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            out.println("    EXPLAIN failed: " + e.getMessage());
+            if (explainConnection != null) {
+                try {
+                    explainConnection.close();
+                } catch (SQLException ignored) {
+                    // Reopened on the next EXPLAIN
+                }
+                explainConnection = null;
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Instant timestamp = Instant.now();
+        private final String thread = Thread.currentThread().getName();
+        private final String sql;
+        private final Object[] parameters;
+        private final long executeNanos;
+        private final long fetchNanos;
+        private final long rows;
+
+        private Entry(String sql, Object[] parameters, long executeNanos, long fetchNanos, long rows) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.executeNanos = executeNanos;
+            this.fetchNanos = fetchNanos;
+            this.rows = rows;
+        }
+    }
+}
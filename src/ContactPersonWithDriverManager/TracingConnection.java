@@ -0,0 +1,207 @@
+package ContactPersonWithDriverManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+// Proxies a physical connection so every statement it creates is timed. Statements whose execute time plus
+// result set fetch time reach the SlowQueryLog threshold are handed to the log with their bind parameters.
+// Wrap the connection the pool gets from the driver, so pooled and cached statements are traced too.
+final class TracingConnection {
+
+    private TracingConnection() {
+    }
+
+    static Connection wrap(Connection physical, SlowQueryLog log) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(physical, log));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private final SlowQueryLog log;
+
+        private ConnectionHandler(Connection physical, SlowQueryLog log) {
+            this.physical = physical;
+            this.log = log;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(physical, method, args);
+            switch (method.getName()) {
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    // Proxy the interface the caller asked for: Statement, PreparedStatement or CallableStatement
+                    String sql = method.getName().equals("createStatement") ? null : (String) args[0];
+                    return Proxy.newProxyInstance(
+                            Statement.class.getClassLoader(),
+                            new Class<?>[]{method.getReturnType()},
+                            new StatementHandler((Statement) result, sql, log));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        private final SlowQueryLog log;
+        private Object[] parameters = new Object[8];
+        private int parameterCount;
+
+        private StatementHandler(Statement statement, String sql, SlowQueryLog log) {
+            this.statement = statement;
+            this.sql = sql;
+            this.log = log;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                    && statement instanceof PreparedStatement) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return invokeTarget(statement, method, args);
+            }
+            switch (name) {
+                case "clearParameters":
+                    Arrays.fill(parameters, null);
+                    parameterCount = 0;
+                    return invokeTarget(statement, method, args);
+                case "executeQuery":
+                    return executeQuery(method, args);
+                case "execute":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return executeUpdate(method, args);
+                default:
+                    return invokeTarget(statement, method, args);
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        // Statement.executeQuery(sql) and friends carry the SQL; PreparedStatement methods use the prepared text
+        private String sqlOf(Object[] args) {
+            return args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+        }
+
+        private Object executeQuery(Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            ResultSet resultSet = (ResultSet) invokeTarget(statement, method, args);
+            long executeNanos = System.nanoTime() - start;
+            return Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    new ResultSetHandler(resultSet, this, sqlOf(args), executeNanos));
+        }
+
+        private Object executeUpdate(Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            Object result = invokeTarget(statement, method, args);
+            long executeNanos = System.nanoTime() - start;
+            if (log.isSlow(executeNanos)) {
+                log.record(sqlOf(args), parameterSnapshot(), executeNanos, 0, affectedRows(result));
+            }
+            return result;
+        }
+
+        private Object[] parameterSnapshot() {
+            return Arrays.copyOf(parameters, parameterCount);
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            } else {
+                // execute() only tells whether a result set came back
+                return -1;
+            }
+            return rows;
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final StatementHandler statement;
+        private final String sql;
+        private final long executeNanos;
+        private long fetchNanos;
+        private long rows;
+        private boolean reported;
+
+        private ResultSetHandler(ResultSet resultSet, StatementHandler statement, String sql, long executeNanos) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.sql = sql;
+            this.executeNanos = executeNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    long start = System.nanoTime();
+                    boolean hasRow = (Boolean) invokeTarget(resultSet, method, args);
+                    fetchNanos += System.nanoTime() - start;
+                    if (hasRow) {
+                        rows++;
+                    }
+                    return hasRow;
+                case "close":
+                    try {
+                        return invokeTarget(resultSet, method, args);
+                    } finally {
+                        report();
+                    }
+                default:
+                    return invokeTarget(resultSet, method, args);
+            }
+        }
+
+        // The statement is not rebound while its result set is open, so its parameters still belong to this query
+        private void report() {
+            if (!reported && statement.log.isSlow(executeNanos + fetchNanos)) {
+                statement.log.record(sql, statement.parameterSnapshot(), executeNanos, fetchNanos, rows);
+            }
+            reported = true;
+        }
+    }
+}